@@ -0,0 +1,31 @@
+package cim.loader;
+
+import java.nio.file.Path;
+
+/**
+ * Records a {@link LoadPhaseEvent} for every phase, loaded by {@link PhaseRecorder} when the JVM supports JFR
+ */
+class JfrEvents implements PhaseRecorder.Events {
+
+    @Override
+    public Object begin() {
+        LoadPhaseEvent event = new LoadPhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void commit(Object started, PhaseMetrics metrics, Path directory) {
+        LoadPhaseEvent event = (LoadPhaseEvent) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = metrics.getPhase().name();
+            event.directory = directory.toString();
+            event.bytesRead = metrics.getBytesRead();
+            event.documents = metrics.getDocuments();
+            event.triples = metrics.getTriples();
+            event.allocatedBytes = metrics.getAllocatedBytes();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package cim.loader;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event recorded for every phase of a load, spanning the duration of the phase
+ */
+@Name("cim.LoadPhase")
+@Label("CIM Load Phase")
+@Category("CIM")
+@Description("A phase of loading a CIM distribution")
+class LoadPhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Directory")
+    String directory;
+
+    @Label("Bytes Read")
+    @DataAmount
+    long bytesRead;
+
+    @Label("Documents")
+    long documents;
+
+    @Label("Triples")
+    long triples;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
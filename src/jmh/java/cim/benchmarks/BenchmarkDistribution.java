@@ -0,0 +1,78 @@
+package cim.benchmarks;
+
+import cim.loader.DistributionGenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Locates the CIM distribution used by the benchmarks.
+ * Benchmarks take the distribution as the <code>cimPath</code> parameter, so several distributions can be measured
+ * in the same run with <code>-p cimPath=path/to/one/src,path/to/other/src</code>.
+ * <code>synthetic:N</code> generates a distribution N times the default size of {@link DistributionGenerator}
+ * in a temporary directory. When the parameter is empty the <code>cim.path</code> system property is used.
+ */
+class BenchmarkDistribution {
+
+    static final String PATH_PROPERTY = "cim.path";
+    static final String SYNTHETIC = "synthetic:";
+
+    // generated distributions by scale, removed when the benchmark JVM exits
+    private static final Map<Integer, Path> generated = new HashMap<>();
+
+    private BenchmarkDistribution() {
+    }
+
+    /**
+     * Resolves the directory of the distribution for a benchmark parameter
+     * @param cimPath
+     * @return
+     */
+    static synchronized Path resolve(String cimPath) throws IOException {
+        String path = cimPath == null || cimPath.isEmpty() ? System.getProperty(PATH_PROPERTY) : cimPath;
+        if (path == null || path.isEmpty()) {
+            throw new IllegalStateException("Set the path of the CIM distribution with -p cimPath=... or -D" + PATH_PROPERTY + "=...");
+        }
+        if (path.startsWith(SYNTHETIC)) {
+            return synthetic(Integer.parseInt(path.substring(SYNTHETIC.length())));
+        }
+        Path directory = Paths.get(path);
+        if (!Files.isDirectory(directory)) {
+            throw new IllegalStateException("CIM distribution not found: " + directory);
+        }
+        return directory;
+    }
+
+    private static Path synthetic(int scale) throws IOException {
+        Path directory = generated.get(scale);
+        if (directory == null) {
+            directory = Files.createTempDirectory("cim-synthetic-" + scale + "-");
+            DistributionGenerator.scaled(scale).generate(directory);
+            generated.put(scale, directory);
+            Path toDelete = directory;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> delete(toDelete)));
+        }
+        return directory;
+    }
+
+    private static void delete(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.delete(p);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            // temporary files, left for the OS to clean
+        }
+    }
+}
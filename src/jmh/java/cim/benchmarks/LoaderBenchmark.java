@@ -0,0 +1,74 @@
+package cim.benchmarks;
+
+import cim.loader.CIMLoader;
+import cim.loader.CIMUseCase;
+import org.apache.jena.rdf.model.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times each phase of loading the distribution separately: finding the files, parsing the JSON documents,
+ * flattening the JSON-LD graph and building the Jena model.
+ * Snapshots are disabled, so every invocation parses the distribution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class LoaderBenchmark {
+
+    // Distribution to load, a path or synthetic:N for a generated one, see BenchmarkDistribution
+    @Param({"synthetic:1", "synthetic:10"})
+    public String cimPath;
+
+    @Param({"CONCEPTUAL_AND_SCHEMA"})
+    public CIMUseCase useCase;
+
+    @Param({"1"})
+    public int parallelism;
+
+    private CIMLoader loader;
+
+    @Setup
+    public void setup() throws IOException {
+        loader = new CIMLoader(BenchmarkDistribution.resolve(cimPath), useCase);
+        loader.setParallelism(parallelism);
+        loader.setSnapshotDirectory(null);
+    }
+
+    @Benchmark
+    public List<Path> getSchemaFiles() throws IOException {
+        return loader.getSchemaFiles();
+    }
+
+    @Benchmark
+    public List<Object> getJsonDocuments() throws IOException {
+        return loader.getJsonDocuments();
+    }
+
+    @Benchmark
+    public Object getJsonLDGraph() throws IOException {
+        return loader.getJsonLDGraph();
+    }
+
+    @Benchmark
+    public Model getJenaModel() throws IOException {
+        return loader.getJenaModel();
+    }
+}
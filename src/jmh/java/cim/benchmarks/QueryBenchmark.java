@@ -0,0 +1,111 @@
+package cim.benchmarks;
+
+import cim.examples.rdf.ClassRelationships;
+import cim.examples.rdf.RegenerateQueries;
+import cim.loader.CIMLoader;
+import cim.loader.CIMUseCase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every query of {@link cim.examples.rdf.Queries} and {@link RegenerateQueries} over a model loaded once
+ * per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class QueryBenchmark {
+
+    // Distribution to load, a path or synthetic:N for a generated one, see BenchmarkDistribution
+    @Param({"synthetic:1", "synthetic:10"})
+    public String cimPath;
+
+    // Load the model with the materialized sh:and closure and use the matching queries
+    @Param({"false"})
+    public boolean shapeClosure;
+
+    private RegenerateQueries queries;
+
+    @Setup
+    public void setup() throws IOException {
+        CIMLoader loader = new CIMLoader(BenchmarkDistribution.resolve(cimPath), CIMUseCase.CONCEPTUAL_AND_SCHEMA);
+        loader.setSnapshotDirectory(null);
+        loader.setShapeClosure(shapeClosure);
+        queries = new RegenerateQueries(loader.getJenaModel(), shapeClosure);
+    }
+
+    @Benchmark
+    public int countsQuery() {
+        return queries.countsQuery("rdfs:Class");
+    }
+
+    @Benchmark
+    public String listModelElementTypes() {
+        return queries.listModelElementTypes();
+    }
+
+    @Benchmark
+    public String listClasses() {
+        return queries.listClasses();
+    }
+
+    @Benchmark
+    public String reconstructTable() {
+        return queries.reconstructTable();
+    }
+
+    @Benchmark
+    public ClassRelationships relationships() {
+        return queries.relationships();
+    }
+
+    @Benchmark
+    public String cardinalities() {
+        return queries.cardinalities();
+    }
+
+    @Benchmark
+    public String subjectAreas() {
+        return queries.subjectAreas();
+    }
+
+    @Benchmark
+    public String entityGroups() {
+        return queries.entityGroups();
+    }
+
+    @Benchmark
+    public String classConcepts() {
+        return queries.classConcepts();
+    }
+
+    @Benchmark
+    public String propertyConcepts() {
+        return queries.propertyConcepts();
+    }
+
+    @Benchmark
+    public String schemas() {
+        return queries.schemas();
+    }
+
+    @Benchmark
+    public String schemaProperties() {
+        return queries.schemaProperties();
+    }
+}
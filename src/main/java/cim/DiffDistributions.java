@@ -0,0 +1,54 @@
+package cim;
+
+import cim.loader.CIMLoader;
+import cim.loader.CIMUseCase;
+import cim.loader.DistributionChange;
+import cim.loader.DistributionDiff;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+public class DiffDistributions {
+    private static final String USAGE = "USAGE: java -cp cim_example.jar cim.DiffDistributions OLD_CIM_MODEL NEW_CIM_MODEL " +
+            "[--use-case CONCEPTUAL|CANONICAL_SCHEMA|CONCEPTUAL_AND_SCHEMA]";
+
+    public static void main(String[] args) throws IOException {
+        CIMUseCase useCase = CIMUseCase.CONCEPTUAL_AND_SCHEMA;
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--use-case") && i + 1 < args.length) {
+                useCase = CIMUseCase.valueOf(args[++i].toUpperCase());
+            } else {
+                paths.add(Paths.get(args[i]));
+            }
+        }
+        if (paths.size() != 2) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        List<DistributionChange> changes = DistributionDiff.compare(
+                new CIMLoader(paths.get(0), useCase),
+                new CIMLoader(paths.get(1), useCase));
+
+        // One change per line, with a summary on stderr
+        Map<DistributionChange.Type, Integer> totals = new EnumMap<>(DistributionChange.Type.class);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        writer.write("CHANGE\tELEMENT\tID\tATTRIBUTE\tBEFORE\tAFTER\n");
+        for (DistributionChange change : changes) {
+            writer.write(change + "\n");
+            totals.merge(change.getType(), 1, Integer::sum);
+        }
+        writer.flush();
+        System.err.println("Changes: " + totals);
+    }
+}
@@ -1,20 +1,28 @@
 package cim;
 
+import cim.examples.BatchExample;
 import cim.examples.JsonExample;
 import cim.examples.JsonldExample;
 import cim.examples.RdfExample;
+import cim.examples.ServerExample;
 import cim.loader.CIMLoader;
 import cim.loader.CIMUseCase;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
 public class Examples {
 
     public static void main(String[] args) throws IOException {
-        if (args.length != 2) {
-            System.err.println("USAGE: java -jar cim_example.jar PATH_TO_CIM_MODEL (JSON|JSON-LD|RDF)");
+        if (args.length < 2 || args.length > 4
+                || (args.length > 2 && !args[1].equalsIgnoreCase("SERVER") && !args[1].equalsIgnoreCase("BATCH"))
+                || (args.length > 3 && args[1].equalsIgnoreCase("BATCH"))) {
+            System.err.println("USAGE: java -jar cim_example.jar PATH_TO_CIM_MODEL (JSON|JSON-LD|RDF|SERVER [PORT [THREADS]]|BATCH [SCRIPT])");
             System.exit(1);
         }
         Path path = Paths.get(args[0]);
@@ -35,5 +43,26 @@ public class Examples {
         if (example.equalsIgnoreCase("RDF")) {
             RdfExample.run(path);
         }
+
+        // Local HTTP server for SPARQL queries and reports
+        if (example.equalsIgnoreCase("SERVER")) {
+            int port = args.length > 2 ? Integer.parseInt(args[2]) : 8080;
+            int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            ServerExample.run(path, port, threads);
+        }
+
+        // Script of commands sharing the loaded models, read from a file or stdin
+        if (example.equalsIgnoreCase("BATCH")) {
+            String script = args.length > 2 ? args[2] : "-";
+            int failures;
+            try (BufferedReader reader = script.equals("-") ?
+                    new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)) :
+                    Files.newBufferedReader(Paths.get(script), StandardCharsets.UTF_8)) {
+                failures = BatchExample.run(path, reader);
+            }
+            if (failures > 0) {
+                System.exit(1);
+            }
+        }
     }
 }
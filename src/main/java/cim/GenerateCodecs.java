@@ -0,0 +1,40 @@
+package cim;
+
+import cim.examples.rdf.CodecGenerator;
+import cim.examples.rdf.Queries;
+import cim.examples.rdf.ReconstructedClass;
+import cim.loader.CIMLoader;
+import cim.loader.CIMUseCase;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GenerateCodecs {
+    private static final String USAGE = "USAGE: java -cp cim_example.jar cim.GenerateCodecs PATH_TO_CIM_MODEL SOURCE_DIRECTORY " +
+            "[--package NAME]";
+
+    public static void main(String[] args) throws IOException {
+        String packageName = "cim.records";
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--package") && i + 1 < args.length) {
+                packageName = args[++i];
+            } else {
+                paths.add(args[i]);
+            }
+        }
+        if (paths.size() != 2) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        CIMLoader loader = new CIMLoader(Paths.get(paths.get(0)), CIMUseCase.CONCEPTUAL_AND_SCHEMA);
+        // The classes with the property shapes of their own, inherited and sh:and shapes drive the generated records
+        List<ReconstructedClass> classes = new Queries(loader.getJenaModel()).reconstructClasses();
+        List<Path> files = new CodecGenerator(packageName).write(classes, Paths.get(paths.get(1)));
+        System.out.println("Generated " + files.size() + " files for " + classes.size() + " classes in " + paths.get(1));
+    }
+}
@@ -0,0 +1,63 @@
+package cim;
+
+import cim.loader.DistributionGenerator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class GenerateDistribution {
+    private static final String USAGE = "USAGE: java -cp cim_example.jar cim.GenerateDistribution OUTPUT_DIRECTORY " +
+            "[--scale N] [--subject-areas N] [--entity-groups N] [--classes N] [--properties N] [--and-depth N] " +
+            "[--reference-every N] [--seed N]";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length % 2 != 1) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        Path output = Paths.get(args[0]);
+
+        // --scale goes first, so the other options can change the scaled distribution
+        DistributionGenerator generator = new DistributionGenerator();
+        for (int i = 1; i < args.length; i += 2) {
+            if (args[i].equals("--scale")) {
+                generator = DistributionGenerator.scaled(Integer.parseInt(args[i + 1]));
+            }
+        }
+        for (int i = 1; i < args.length; i += 2) {
+            int value = Integer.parseInt(args[i + 1]);
+            switch (args[i]) {
+                case "--scale":
+                    break;
+                case "--subject-areas":
+                    generator.setSubjectAreas(value);
+                    break;
+                case "--entity-groups":
+                    generator.setEntityGroups(value);
+                    break;
+                case "--classes":
+                    generator.setClasses(value);
+                    break;
+                case "--properties":
+                    generator.setProperties(value);
+                    break;
+                case "--and-depth":
+                    generator.setAndDepth(value);
+                    break;
+                case "--reference-every":
+                    generator.setReferenceEvery(value);
+                    break;
+                case "--seed":
+                    generator.setSeed(value);
+                    break;
+                default:
+                    System.err.println(USAGE);
+                    System.exit(1);
+            }
+        }
+
+        int files = generator.generate(output);
+        System.out.println("Generated " + files + " files in " + output);
+    }
+}
@@ -1,33 +1,101 @@
 package cim;
 
+import cim.examples.rdf.MetamodelReports;
+import cim.examples.rdf.Queries;
 import cim.examples.rdf.RegenerateQueries;
 import cim.loader.CIMLoader;
 import cim.loader.CIMUseCase;
 import org.apache.jena.rdf.model.Model;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class RegenerateExample {
+    private static final String USAGE = "USAGE: java -jar cim_example.jar PATH_TO_CIM_MODEL [PATH_TO_TDB2_DATABASE] " +
+            "[--index] [--closure] [--metrics] [--subject-area NAME]... [--entity-group NAME]... [--output DIRECTORY [--threads N]]";
+
     public static void main(String[] args) throws IOException {
-        if (args.length != 1) {
-            System.err.println("USAGE: java -jar cim_example.jar PATH_TO_CIM_MODEL");
+        Path outputDirectory = null;
+        int threads = 0;
+        boolean useIndex = false;
+        boolean shapeClosure = false;
+        boolean metrics = false;
+        List<String> subjectAreas = new ArrayList<>();
+        List<String> entityGroups = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--output") && i + 1 < args.length) {
+                outputDirectory = Paths.get(args[++i]);
+            } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--index")) {
+                useIndex = true;
+            } else if (args[i].equals("--closure")) {
+                shapeClosure = true;
+            } else if (args[i].equals("--subject-area") && i + 1 < args.length) {
+                subjectAreas.add(args[++i]);
+            } else if (args[i].equals("--entity-group") && i + 1 < args.length) {
+                entityGroups.add(args[++i]);
+            } else if (args[i].equals("--metrics")) {
+                metrics = true;
+            } else {
+                paths.add(args[i]);
+            }
+        }
+        if (paths.size() != 1 && paths.size() != 2 || threads < 0 || (threads > 0 && outputDirectory == null)) {
+            System.err.println(USAGE);
             System.exit(1);
         }
-        Path path = Paths.get(args[0]);
+        Path path = Paths.get(paths.get(0));
 
         CIMLoader loader = new CIMLoader(path, CIMUseCase.CONCEPTUAL_AND_SCHEMA);
-        Model model = loader.getJenaModel();
+        // Inherited property shapes can be materialized at load time, so queries do not evaluate sh:and paths
+        loader.setShapeClosure(shapeClosure);
+        // Only the selected subject areas and entity groups are loaded, with the entity groups they reference
+        loader.setSelection(subjectAreas, entityGroups);
+        if (metrics) {
+            // Time, size and memory of every load phase, on stderr so the tables are not affected
+            loader.addListener(System.err::println);
+        }
+        // The model can be kept in memory or in a disk-backed TDB2 database
+        Model model = paths.size() == 2 ? loader.getTDB2Model(Paths.get(paths.get(1))) : loader.getJenaModel();
 
-        RegenerateQueries queries = new RegenerateQueries(model);
+        RegenerateQueries queries = new RegenerateQueries(model, shapeClosure);
+        // The tables can also be computed from the metamodel index, without SPARQL
+        MetamodelReports reports = useIndex ? new MetamodelReports(queries.metamodelIndex()) : null;
+        Map<String, Queries.Report> tables = useIndex ? reports.tables() : queries.tables();
 
-        System.out.println(queries.subjectAreas());
-        System.out.println(queries.entityGroups());
-        System.out.println(queries.classConcepts());
-        System.out.println(queries.propertyConcepts());
-        System.out.println(queries.schemas());
-        System.out.println(queries.schemaProperties());
+        if (outputDirectory != null) {
+            // Every table is exported concurrently to its own file, by default with one thread per table
+            ExecutorService executor = Executors.newFixedThreadPool(threads > 0 ? threads : tables.size());
+            try {
+                Map<String, Path> files = useIndex ?
+                        reports.exportTables(outputDirectory, executor) :
+                        queries.exportTables(outputDirectory, executor);
+                files.values().forEach(System.out::println);
+            } finally {
+                executor.shutdownNow();
+            }
+            return;
+        }
+
+        // Tables are streamed to the output as they are computed
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        for (Queries.Report table : tables.values()) {
+            table.write(out);
+            out.write("\n");
+        }
+        out.flush();
     }
 
 
@@ -0,0 +1,74 @@
+package cim;
+
+import cim.loader.CIMLoader;
+import cim.loader.CIMUseCase;
+import cim.loader.ShapeValidator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ValidateRecords {
+    private static final String USAGE = "USAGE: java -cp cim_example.jar cim.ValidateRecords PATH_TO_CIM_MODEL RECORDS... " +
+            "[--type CLASS] [--threads N]";
+
+    public static void main(String[] args) throws IOException {
+        String type = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--type") && i + 1 < args.length) {
+                type = args[++i];
+            } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                paths.add(Paths.get(args[i]));
+            }
+        }
+        if (paths.size() < 2 || threads < 1) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        // The shapes are compiled once and shared by all the files
+        CIMLoader loader = new CIMLoader(paths.get(0), CIMUseCase.CONCEPTUAL_AND_SCHEMA);
+        ShapeValidator validator = ShapeValidator.compile(loader.getJenaModel());
+        validator.setDefaultType(type);
+        validator.setParallelism(threads);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        writer.write("FILE\tRECORD\tID\tPATH\tCONSTRAINT\tMESSAGE\n");
+        long records = 0;
+        long[] violations = new long[1];
+        long start = System.nanoTime();
+        for (Path file : paths.subList(1, paths.size())) {
+            try {
+                records += validator.validate(file, (violation) -> {
+                    violations[0]++;
+                    try {
+                        writer.write(file + "\t" + violation + "\n");
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        writer.flush();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.println("Validated " + records + " records against " + validator.getTypeCount() + " types in " +
+                String.format("%.3f", seconds) + " s (" + Math.round(records / seconds) + " records/s), " +
+                violations[0] + " violations");
+        if (violations[0] > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package cim.examples;
+
+import cim.examples.rdf.Queries;
+import cim.examples.rdf.RegenerateQueries;
+import cim.examples.rdf.ResultCache;
+import cim.loader.CIMLoader;
+import cim.loader.CIMUseCase;
+import cim.loader.JsonLDGraphIndex;
+import org.apache.jena.rdf.model.Model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Example that runs a script of commands in a single JVM, loading each level of the model at most once and sharing
+ * it across all the commands that need it. One command per line, blank lines and lines starting with # are ignored:
+ * <pre>
+ * JSON | JSON-LD | RDF          output of the example for that level
+ * use USE_CASE                  use case of the model for the following commands, CONCEPTUAL_AND_SCHEMA by default
+ * reports                       names of the reports
+ * report NAME                   report as TSV
+ * count TYPE                    number of elements of a type, like rdfs:Class
+ * sparql QUERY                  any SPARQL query, as TSV or Turtle, in a single line
+ * export DIRECTORY [NAME ...]   reports as TSV files in a directory, every table by default
+ * </pre>
+ * A failing command is reported and the script goes on with the next one.
+ */
+public class BatchExample {
+
+    // Maximum number of characters of the cached reports of each model
+    private static final long CACHE_SIZE = 64L * 1024 * 1024;
+
+    private final Path cimPath;
+    private final Map<CIMUseCase, CIMLoader> loaders = new EnumMap<>(CIMUseCase.class);
+    private final Map<CIMUseCase, Model> models = new EnumMap<>(CIMUseCase.class);
+    private final Map<CIMUseCase, RegenerateQueries> queries = new EnumMap<>(CIMUseCase.class);
+    private List<Path> jsonFiles;
+    private Object jsonDocuments;
+    private JsonLDGraphIndex jsonLDIndex;
+    private Object jsonLDContext;
+    private CIMUseCase useCase = CIMUseCase.CONCEPTUAL_AND_SCHEMA;
+    private ExecutorService exporter;
+
+    public BatchExample(Path cimPath) {
+        this.cimPath = cimPath;
+    }
+
+    /**
+     * Runs every command of a script
+     * @param cimPath
+     * @param script
+     * @return number of commands that failed
+     * @throws IOException if the script cannot be read
+     */
+    public static int run(Path cimPath, BufferedReader script) throws IOException {
+        BatchExample batch = new BatchExample(cimPath);
+        try {
+            return batch.runScript(script);
+        } finally {
+            batch.close();
+        }
+    }
+
+    public int runScript(BufferedReader script) throws IOException {
+        int failures = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = script.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                execute(line);
+            } catch (Exception e) {
+                failures++;
+                System.out.flush();
+                System.err.println("Error in line " + lineNumber + " '" + line + "': " + e);
+            }
+            System.out.flush();
+        }
+        return failures;
+    }
+
+    /**
+     * Runs a single command
+     * @param command
+     * @throws IOException
+     * @throws IllegalArgumentException if the command is not valid
+     */
+    public void execute(String command) throws IOException {
+        String[] parts = command.trim().split("\\s+", 2);
+        String name = parts[0];
+        String arguments = parts.length > 1 ? parts[1].trim() : "";
+
+        if (name.equalsIgnoreCase("JSON")) {
+            noArguments(name, arguments);
+            if (jsonDocuments == null) {
+                CIMLoader loader = loader(CIMUseCase.CONCEPTUAL);
+                jsonFiles = loader.getSchemaFiles();
+                jsonDocuments = loader.getJsonDocuments();
+            }
+            JsonExample.print(jsonFiles, jsonDocuments);
+        } else if (name.equalsIgnoreCase("JSON-LD")) {
+            noArguments(name, arguments);
+            if (jsonLDIndex == null) {
+                CIMLoader loader = loader(CIMUseCase.CONCEPTUAL_AND_SCHEMA);
+                jsonLDContext = loader.loadJsonldContext();
+                jsonLDIndex = new JsonLDGraphIndex(loader.getJsonLDGraph(), jsonLDContext);
+            }
+            JsonldExample.run(jsonLDIndex, jsonLDContext);
+        } else if (name.equalsIgnoreCase("RDF")) {
+            noArguments(name, arguments);
+            RegenerateQueries rdfQueries = queries(CIMUseCase.CONCEPTUAL_AND_SCHEMA);
+            RdfExample.run(models.get(CIMUseCase.CONCEPTUAL_AND_SCHEMA), rdfQueries);
+        } else if (name.equalsIgnoreCase("use")) {
+            try {
+                useCase = CIMUseCase.valueOf(arguments.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown use case '" + arguments + "', expected one of " + Arrays.toString(CIMUseCase.values()));
+            }
+        } else if (name.equalsIgnoreCase("reports")) {
+            noArguments(name, arguments);
+            queries(useCase).reports().keySet().forEach(System.out::println);
+        } else if (name.equalsIgnoreCase("report")) {
+            Queries.Report report = queries(useCase).reports().get(arguments);
+            if (report == null) {
+                throw new IllegalArgumentException("Unknown report: " + arguments);
+            }
+            Writer writer = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+            report.write(writer);
+            writer.flush();
+        } else if (name.equalsIgnoreCase("count")) {
+            required(name, arguments, "TYPE");
+            System.out.println(arguments + "\t" + queries(useCase).countsQuery(arguments));
+        } else if (name.equalsIgnoreCase("sparql")) {
+            required(name, arguments, "QUERY");
+            queries(useCase).sparql(arguments, System.out);
+        } else if (name.equalsIgnoreCase("export")) {
+            required(name, arguments, "DIRECTORY");
+            String[] targets = arguments.split("\\s+");
+            Path directory = Paths.get(targets[0]);
+            RegenerateQueries exportQueries = queries(useCase);
+            Map<String, Path> files = targets.length == 1 ?
+                    exportQueries.exportTables(directory, exporter()) :
+                    exportQueries.exportReports(Arrays.asList(targets).subList(1, targets.length), directory, exporter());
+            files.values().forEach(System.out::println);
+        } else {
+            throw new IllegalArgumentException("Unknown command: " + name);
+        }
+    }
+
+    // Stops the threads exporting reports
+    public void close() {
+        if (exporter != null) {
+            exporter.shutdown();
+        }
+    }
+
+    private CIMLoader loader(CIMUseCase useCase) {
+        return loaders.computeIfAbsent(useCase, (u) -> new CIMLoader(cimPath, u));
+    }
+
+    // Queries over the model of a use case, loading it the first time
+    private RegenerateQueries queries(CIMUseCase useCase) throws IOException {
+        RegenerateQueries loaded = queries.get(useCase);
+        if (loaded == null) {
+            Model model = loader(useCase).getJenaModel();
+            models.put(useCase, model);
+            loaded = new RegenerateQueries(model);
+            loaded.setCache(ResultCache.forModel(model, CACHE_SIZE));
+            queries.put(useCase, loaded);
+        }
+        return loaded;
+    }
+
+    private ExecutorService exporter() {
+        if (exporter == null) {
+            exporter = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+        return exporter;
+    }
+
+    private static void noArguments(String command, String arguments) {
+        if (!arguments.isEmpty()) {
+            throw new IllegalArgumentException(command + " takes no arguments");
+        }
+    }
+
+    private static void required(String command, String arguments, String expected) {
+        if (arguments.isEmpty()) {
+            throw new IllegalArgumentException("USAGE: " + command + " " + expected);
+        }
+    }
+}
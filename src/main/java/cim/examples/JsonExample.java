@@ -6,6 +6,7 @@ import com.github.jsonldjava.utils.JsonUtils;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.List;
 
 public class JsonExample {
 
@@ -20,11 +21,18 @@ public class JsonExample {
         CIMLoader loader = new CIMLoader(cimPath, CIMUseCase.CONCEPTUAL);
 
         // Paths for the relevant files in the distribution for the selected level
-        loader.getSchemaFiles().stream().forEach(System.out::println);
+        List<Path> files = loader.getSchemaFiles();
 
         // Loads all the JSON data from the distribution into a single JSON object
         Object json = loader.getJsonDocuments();
 
+        print(files, json);
+    }
+
+    // Prints the files and the JSON documents loaded from them
+    public static void print(List<Path> files, Object json) throws IOException {
+        files.forEach(System.out::println);
+
         // Print the output JSON document
         System.out.println(JsonUtils.toPrettyString(json));
     }
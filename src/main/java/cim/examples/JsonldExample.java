@@ -2,20 +2,22 @@ package cim.examples;
 
 import cim.loader.CIMLoader;
 import cim.loader.CIMUseCase;
+import cim.loader.JsonLDGraphIndex;
 import com.github.jsonldjava.core.JsonLdOptions;
 import com.github.jsonldjava.core.JsonLdProcessor;
-import com.github.jsonldjava.core.JsonLdUtils;
 import com.github.jsonldjava.utils.JsonUtils;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.List;
 
 public class JsonldExample {
 
     /**
      * Example where we are using the JSON data as a JSON-LD graph, so we can use some standard
-     * JSON-LD functionality, like in this example framing (https://www.w3.org/TR/json-ld11-framing/).
+     * JSON-LD functionality, like in this example framing (https://www.w3.org/TR/json-ld11-framing/), here done with the
+     * indexes of {@link JsonLDGraphIndex} instead of the framing algorithm, followed by compaction.
      * This is a viable way of working with the metadata graph of the model if the right JSON-LD library are
      * used.
      * @param cimPath
@@ -29,20 +31,27 @@ public class JsonldExample {
         // Load all of CIM into a single graph
         Object singleJsonLDGraph = loader.getJsonLDGraph();
 
-        // Some problem with the framing API
-        /*
-        // Define a JSON-LD frame to extract all the properties
-        Object frame = new HashMap<String, Object>() {{
-            put("@context", loader.loadJsonldContext());
-            put("@type", "rdf:Property");
-        }};
-
+        // Index the graph once by @id and @type
+        Object context = loader.loadJsonldContext();
+        run(new JsonLDGraphIndex(singleJsonLDGraph, context), context);
+    }
 
-        // Extract all the properties
-        //Object framed = JsonLdProcessor.frame(singleJsonLDGraph, frame, new JsonLdOptions());
-         */
+    // Prints the properties of an indexed graph with their domains embedded
+    public static void run(JsonLDGraphIndex index, Object context) throws IOException {
+        // Extract all the properties with their domains embedded, like the JSON-LD frame
+        // {"@type": "rdf:Property", "domain": {"@embed": "@always"}} would
+        List<Object> framed = index.frame("rdf:Property", "domain");
+
+        // Compact the frames with the context of the model, if there is one
+        if (context != null) {
+            print(JsonLdProcessor.compact(framed, Collections.singletonMap("@context", context), new JsonLdOptions()));
+        } else {
+            print(framed);
+        }
+    }
 
-        // Print the output JSON-LD document
-        System.out.println(JsonUtils.toPrettyString(singleJsonLDGraph));
+    // Prints a JSON-LD document
+    public static void print(Object graph) throws IOException {
+        System.out.println(JsonUtils.toPrettyString(graph));
     }
 }
@@ -24,6 +24,16 @@ public class RdfExample {
         // Load all of CIM into a single Apache Jena RDF model
         Model model = loader.getJenaModel();
 
+        run(model);
+    }
+
+    // Runs the example over an already loaded model
+    public static void run(Model model) {
+        run(model, new Queries(model));
+    }
+
+    // Runs the example over an already loaded model and its queries
+    public static void run(Model model, Queries queries) {
         // count assertions
         System.out.println("Total number of statements in the graph: " + model.size());
 
@@ -33,7 +43,6 @@ public class RdfExample {
 
         // We can use SPARQL to query the model metadata graph
         // The Queries object stores all the different queries
-        Queries queries = new Queries(model);
 
         // Types of elements
         elementTypesQuery(queries);
@@ -0,0 +1,41 @@
+package cim.examples;
+
+import cim.examples.rdf.QueryServer;
+import cim.examples.rdf.RegenerateQueries;
+import cim.examples.rdf.ResultCache;
+import cim.loader.CIMLoader;
+import cim.loader.CIMUseCase;
+import org.apache.jena.rdf.model.Model;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+
+/**
+ * Example that loads the model once and serves SPARQL queries and the named reports over a local HTTP endpoint,
+ * see {@link QueryServer}. Any number of tools can then query the same model.
+ */
+public class ServerExample {
+
+    // Maximum number of characters of the cached reports
+    private static final long CACHE_SIZE = 64L * 1024 * 1024;
+
+    public static void run(Path cimPath, int port, int threads) throws IOException {
+        CIMLoader loader = new CIMLoader(cimPath, CIMUseCase.CONCEPTUAL_AND_SCHEMA);
+        Model model = loader.getJenaModel();
+
+        // Reports are computed once, until the model changes
+        RegenerateQueries queries = new RegenerateQueries(model);
+        queries.setCache(ResultCache.forModel(model, CACHE_SIZE));
+
+        QueryServer server = new QueryServer(queries);
+        InetSocketAddress address = server.start(port, threads);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+
+        String url = "http://" + address.getHostString() + ":" + address.getPort();
+        System.out.println("Serving " + model.size() + " statements with " + threads + " workers");
+        System.out.println("  SPARQL:  " + url + "/sparql?query=...");
+        System.out.println("  Reports: " + url + "/reports");
+        System.out.println("  Counts:  " + url + "/counts?type=rdfs:Class");
+    }
+}
@@ -0,0 +1,117 @@
+package cim.examples.rdf;
+
+import cim.loader.ShapeGraph;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the links between the classes of the model, built with a single scan of the graph.
+ * A class links to another class when it, or any shape reachable through <code>sh:and*</code>, has a property shape
+ * with <code>sh:node</code> pointing to the other class, the same <code>sh:and*&#47;sh:property&#47;sh:node</code>
+ * path used by the SPARQL queries.
+ * The index keeps both directions, so outgoing and incoming links for a class are answered without querying the graph.
+ */
+public class ClassRelationships {
+
+    private final List<String> classes;
+    private final Map<String, Set<String>> linkedTo;
+    private final Map<String, Set<String>> linkedFrom;
+
+    private ClassRelationships(List<String> classes, Map<String, Set<String>> linkedTo, Map<String, Set<String>> linkedFrom) {
+        this.classes = classes;
+        this.linkedTo = linkedTo;
+        this.linkedFrom = linkedFrom;
+    }
+
+    /**
+     * Builds the index for a graph
+     * @param graph
+     * @return
+     */
+    public static ClassRelationships build(Graph graph) {
+        // shape -> classes referenced by its own property shapes
+        Map<Node, Set<Node>> directLinks = new HashMap<>();
+        ShapeGraph.forEach(graph, Node.ANY, ShapeGraph.SH_PROPERTY, Node.ANY, (t) -> {
+            Node shape = t.getSubject();
+            ShapeGraph.forEach(graph, t.getObject(), ShapeGraph.SH_NODE, Node.ANY, (n) ->
+                    directLinks.computeIfAbsent(shape, (k) -> new LinkedHashSet<>()).add(n.getObject()));
+        });
+
+        // shape -> shapes it is combined with through sh:and
+        Map<Node, List<Node>> and = new HashMap<>();
+        ShapeGraph.forEach(graph, Node.ANY, ShapeGraph.SH_AND, Node.ANY, (t) ->
+                and.computeIfAbsent(t.getSubject(), (k) -> new ArrayList<>()).add(t.getObject()));
+
+        List<String> classes = new ArrayList<>();
+        Map<String, Set<String>> linkedTo = new HashMap<>();
+        Map<String, Set<String>> linkedFrom = new HashMap<>();
+        ShapeGraph.forEach(graph, Node.ANY, RDF.type.asNode(), RDFS.Class.asNode(), (t) -> {
+            Node classNode = t.getSubject();
+            String classId = uri(classNode);
+            classes.add(classId);
+
+            Set<String> targets = linkedTo.computeIfAbsent(classId, (k) -> new HashSet<>());
+            Set<Node> visited = new HashSet<>();
+            Deque<Node> pending = new ArrayDeque<>();
+            pending.add(classNode);
+            while (!pending.isEmpty()) {
+                Node shape = pending.poll();
+                if (visited.add(shape)) {
+                    for (Node target : directLinks.getOrDefault(shape, Collections.emptySet())) {
+                        targets.add(uri(target));
+                        linkedFrom.computeIfAbsent(uri(target), (k) -> new HashSet<>()).add(classId);
+                    }
+                    pending.addAll(and.getOrDefault(shape, Collections.emptyList()));
+                }
+            }
+        });
+
+        return new ClassRelationships(classes, linkedTo, linkedFrom);
+    }
+
+    // All the classes in the model
+    public List<String> getClasses() {
+        return Collections.unmodifiableList(classes);
+    }
+
+    // Classes referenced from the properties of a class
+    public Set<String> linkedTo(String classId) {
+        return Collections.unmodifiableSet(linkedTo.getOrDefault(classId, Collections.emptySet()));
+    }
+
+    // Classes with properties referencing a class
+    public Set<String> linkedFrom(String classId) {
+        return Collections.unmodifiableSet(linkedFrom.getOrDefault(classId, Collections.emptySet()));
+    }
+
+    // Classes linked in both directions with a class
+    public Set<String> oneToOne(String classId) {
+        Set<String> oneToOne = new HashSet<>(linkedTo(classId));
+        oneToOne.retainAll(linkedFrom(classId));
+        return oneToOne;
+    }
+
+    // Classes referencing a class that are not referenced back
+    public Set<String> oneToMany(String classId) {
+        Set<String> oneToMany = new HashSet<>(linkedFrom(classId));
+        oneToMany.removeAll(linkedTo(classId));
+        return oneToMany;
+    }
+
+    private static String uri(Node node) {
+        return node.isURI() ? node.getURI() : null;
+    }
+}
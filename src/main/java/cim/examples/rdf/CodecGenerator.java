@@ -0,0 +1,549 @@
+package cim.examples.rdf;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates Java sources for the classes of the model, from the classes reconstructed by
+ * {@link Queries#reconstructClasses()}: a record class for every class, with a field for every property, and a
+ * streaming JSON reader and writer using the Jackson parser and generator directly.
+ * Records are read and written without reflection or intermediate maps: field names are matched with a switch and
+ * values are read straight into the fields.
+ * <p>
+ * Fields are primitive when the datatype fits one, with a flag telling whether the value is present:
+ * <code>xsd:boolean</code> as boolean, <code>xsd:int</code>, <code>xsd:short</code> and <code>xsd:byte</code> as int,
+ * <code>xsd:integer</code>, <code>xsd:long</code> and the other integer types as long, and <code>xsd:double</code> and
+ * <code>xsd:float</code>. Integers out of the range of a long are rejected by the readers. <code>xsd:decimal</code>
+ * values are BigDecimal, references are the id of the referenced record and any other datatype, like dates, is kept
+ * as its lexical form.
+ * Properties without <code>sh:maxCount</code> or with a maximum count above 1 are lists of the boxed type, read from a
+ * JSON array or a single value and written as an array. The maximum count itself is left to the validator.
+ * The JSON keys are the developer names of the properties, plus <code>@id</code> and <code>@type</code>. Readers
+ * also accept JSON-LD value objects and <code>{"@id": ...}</code> references, skip unknown keys, and fail when a
+ * required property is missing.
+ */
+public class CodecGenerator {
+
+    private static final String XSD = "http://www.w3.org/2001/XMLSchema#";
+    private static final String SUPPORT_CLASS = "CimJson";
+
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue",
+            "default", "do", "double", "else", "enum", "extends", "final", "finally", "float", "for", "goto", "if",
+            "implements", "import", "instanceof", "int", "interface", "long", "native", "new", "package", "private",
+            "protected", "public", "return", "short", "static", "strictfp", "super", "switch", "synchronized", "this",
+            "throw", "throws", "transient", "try", "void", "volatile", "while", "true", "false", "null", "var",
+            "record", "parser", "generator"));
+
+    // Java representation of a datatype
+    private enum FieldType {
+        BOOLEAN("boolean", "Boolean", "readBoolean", "writeBoolean"),
+        INT("int", "Integer", "readInt", "writeNumber"),
+        LONG("long", "Long", "readLong", "writeNumber"),
+        FLOAT("float", "Float", "readFloat", "writeNumber"),
+        DOUBLE("double", "Double", "readDouble", "writeNumber"),
+        DECIMAL("java.math.BigDecimal", "java.math.BigDecimal", "readDecimal", "writeNumber"),
+        STRING("String", "String", "readString", "writeString"),
+        REFERENCE("String", "String", "readReference", "writeString");
+
+        final String javaType;
+        final String boxedType;
+        final boolean primitive;
+        final String reader;
+        // JsonGenerator method writing a value, with a Field suffix for a field
+        final String writer;
+
+        FieldType(String javaType, String boxedType, String reader, String writer) {
+            this.javaType = javaType;
+            this.boxedType = boxedType;
+            this.primitive = !javaType.equals(boxedType);
+            this.reader = reader;
+            this.writer = writer;
+        }
+
+        static FieldType of(ReconstructedClass.Property property) {
+            if (property.isReference()) {
+                return REFERENCE;
+            }
+            String datatype = property.getDatatype();
+            if (datatype == null || !datatype.startsWith(XSD)) {
+                return STRING;
+            }
+            switch (datatype.substring(XSD.length())) {
+                case "boolean":
+                    return BOOLEAN;
+                case "int":
+                case "short":
+                case "byte":
+                case "unsignedShort":
+                case "unsignedByte":
+                    return INT;
+                case "integer":
+                case "long":
+                case "nonNegativeInteger":
+                case "positiveInteger":
+                case "nonPositiveInteger":
+                case "negativeInteger":
+                case "unsignedInt":
+                case "unsignedLong":
+                    return LONG;
+                case "float":
+                    return FLOAT;
+                case "double":
+                    return DOUBLE;
+                case "decimal":
+                    return DECIMAL;
+                default:
+                    return STRING;
+            }
+        }
+    }
+
+    // A property of a generated class
+    private static class Field {
+        final ReconstructedClass.Property property;
+        final FieldType type;
+        final boolean list;
+        final String javaType;
+        final String name;
+        final String accessor;
+
+        Field(ReconstructedClass.Property property, String name) {
+            this.property = property;
+            this.type = FieldType.of(property);
+            this.list = property.isMultiValued();
+            this.javaType = list ? "List<" + type.boxedType + ">" : type.javaType;
+            this.name = name;
+            this.accessor = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        }
+
+        // Whether the field has a presence flag
+        boolean flagged() {
+            return type.primitive && !list;
+        }
+    }
+
+    private final String packageName;
+
+    /**
+     * @param packageName package of the generated classes
+     */
+    public CodecGenerator(String packageName) {
+        this.packageName = packageName;
+    }
+
+    /**
+     * Generates the sources for some classes
+     * @param classes
+     * @return the sources by file name, one for every class plus the shared support class
+     */
+    public Map<String, String> generate(List<ReconstructedClass> classes) {
+        Map<String, String> sources = new LinkedHashMap<>();
+        Set<String> classNames = new HashSet<>();
+        classNames.add(SUPPORT_CLASS);
+        for (ReconstructedClass cimClass : classes) {
+            String className = unique(identifier(cimClass.getDeveloperName(), true), classNames);
+            sources.put(className + ".java", recordClass(className, cimClass));
+        }
+        sources.put(SUPPORT_CLASS + ".java", supportClass());
+        return sources;
+    }
+
+    /**
+     * Writes the sources for some classes in the directory of their package
+     * @param classes
+     * @param sourceDirectory root of the sources, like src/main/java
+     * @return the files written
+     * @throws IOException
+     */
+    public List<Path> write(List<ReconstructedClass> classes, Path sourceDirectory) throws IOException {
+        Path directory = packageName.isEmpty() ? sourceDirectory : sourceDirectory.resolve(packageName.replace('.', '/'));
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        for (Map.Entry<String, String> source : generate(classes).entrySet()) {
+            Path file = directory.resolve(source.getKey());
+            Files.write(file, source.getValue().getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+        return files;
+    }
+
+    private String recordClass(String className, ReconstructedClass cimClass) {
+        Set<String> names = new HashSet<>(Arrays.asList("id", "TYPE"));
+        List<Field> fields = new ArrayList<>();
+        for (ReconstructedClass.Property property : cimClass.getProperties()) {
+            fields.add(new Field(property, unique(identifier(property.getDeveloperName(), false), names)));
+        }
+
+        boolean lists = fields.stream().anyMatch((field) -> field.list);
+
+        StringBuilder s = new StringBuilder();
+        header(s);
+        s.append("import com.fasterxml.jackson.core.JsonGenerator;\n");
+        s.append("import com.fasterxml.jackson.core.JsonParser;\n");
+        s.append("import com.fasterxml.jackson.core.JsonToken;\n\n");
+        s.append("import java.io.IOException;\n");
+        if (lists) {
+            s.append("import java.util.List;\n");
+        }
+        s.append("\n");
+        s.append("/**\n");
+        s.append(" * ").append(comment(cimClass.getDescription())).append("\n");
+        s.append(" * Entity group: ").append(comment(cimClass.getEntityGroup())).append("\n");
+        s.append(" * Generated from the CIM shapes, do not edit.\n");
+        s.append(" */\n");
+        s.append("public final class ").append(className).append(" {\n\n");
+        s.append("    public static final String TYPE = ").append(literal(cimClass.getDeveloperName())).append(";\n\n");
+
+        // fields
+        s.append("    private String id;\n");
+        for (Field field : fields) {
+            List<String> notes = new ArrayList<>();
+            if (field.property.isRequired()) {
+                notes.add("required");
+            }
+            if (field.property.isReference()) {
+                notes.add((field.list ? "ids" : "id") + " of the referenced " + comment(field.property.getReferencedEntity()));
+            }
+            if (field.property.getMaxCount() > 1) {
+                notes.add("at most " + field.property.getMaxCount() + " values");
+            }
+            if (!notes.isEmpty()) {
+                s.append("    // ").append(String.join(", ", notes)).append("\n");
+            }
+            s.append("    private ").append(field.javaType).append(" ").append(field.name).append(";\n");
+            if (field.flagged()) {
+                s.append("    private boolean has").append(field.accessor).append(";\n");
+            }
+        }
+        s.append("\n");
+
+        // accessors
+        s.append("    public String getId() {\n        return id;\n    }\n\n");
+        s.append("    public void setId(String id) {\n        this.id = id;\n    }\n\n");
+        for (Field field : fields) {
+            String getter = (field.type == FieldType.BOOLEAN && !field.list ? "is" : "get") + field.accessor;
+            s.append("    public ").append(field.javaType).append(" ").append(getter).append("() {\n");
+            s.append("        return ").append(field.name).append(";\n    }\n\n");
+            s.append("    public void set").append(field.accessor).append("(").append(field.javaType).append(" ").append(field.name).append(") {\n");
+            s.append("        this.").append(field.name).append(" = ").append(field.name).append(";\n");
+            if (field.flagged()) {
+                s.append("        this.has").append(field.accessor).append(" = true;\n");
+            }
+            s.append("    }\n\n");
+            if (field.flagged()) {
+                s.append("    public boolean has").append(field.accessor).append("() {\n");
+                s.append("        return has").append(field.accessor).append(";\n    }\n\n");
+                s.append("    public void clear").append(field.accessor).append("() {\n");
+                s.append("        this.has").append(field.accessor).append(" = false;\n    }\n\n");
+            }
+        }
+
+        // reader
+        s.append("    /**\n");
+        s.append("     * Reads a record, from the parser positioned at its START_OBJECT token or just before it\n");
+        s.append("     * @param parser\n");
+        s.append("     * @return\n");
+        s.append("     * @throws IOException if the JSON is not valid, a value does not have the datatype of its property, or a\n");
+        s.append("     * required property is missing\n");
+        s.append("     */\n");
+        s.append("    public static ").append(className).append(" read(JsonParser parser) throws IOException {\n");
+        s.append("        ").append(SUPPORT_CLASS).append(".startObject(parser, TYPE);\n");
+        s.append("        ").append(className).append(" record = new ").append(className).append("();\n");
+        s.append("        while (parser.nextToken() == JsonToken.FIELD_NAME) {\n");
+        s.append("            String name = parser.getCurrentName();\n");
+        s.append("            if (parser.nextToken() == JsonToken.VALUE_NULL) {\n");
+        s.append("                continue;\n");
+        s.append("            }\n");
+        s.append("            switch (name) {\n");
+        s.append("                case \"@id\":\n");
+        s.append("                    record.id = ").append(SUPPORT_CLASS).append(".readReference(parser);\n");
+        s.append("                    break;\n");
+        for (Field field : fields) {
+            s.append("                case ").append(literal(field.property.getDeveloperName())).append(":\n");
+            s.append("                    record.").append(field.name).append(" = ").append(SUPPORT_CLASS).append(".");
+            if (field.list) {
+                s.append("readList(parser, ").append(SUPPORT_CLASS).append("::").append(field.type.reader).append(");\n");
+            } else {
+                s.append(field.type.reader).append("(parser);\n");
+            }
+            if (field.flagged()) {
+                s.append("                    record.has").append(field.accessor).append(" = true;\n");
+            }
+            s.append("                    break;\n");
+        }
+        s.append("                default:\n");
+        s.append("                    parser.skipChildren();\n");
+        s.append("            }\n");
+        s.append("        }\n");
+        for (Field field : fields) {
+            if (field.property.isRequired()) {
+                String missing = field.flagged() ? "!record.has" + field.accessor : "record." + field.name + " == null";
+                if (field.list) {
+                    missing += " || record." + field.name + ".isEmpty()";
+                }
+                s.append("        if (").append(missing).append(") {\n");
+                s.append("            throw ").append(SUPPORT_CLASS).append(".missing(parser, TYPE, ")
+                        .append(literal(field.property.getDeveloperName())).append(");\n");
+                s.append("        }\n");
+            }
+        }
+        s.append("        return record;\n");
+        s.append("    }\n\n");
+
+        // writer
+        s.append("    // Writes the record as a JSON object, with the properties that have a value\n");
+        s.append("    public void write(JsonGenerator generator) throws IOException {\n");
+        s.append("        generator.writeStartObject();\n");
+        s.append("        if (id != null) {\n");
+        s.append("            generator.writeStringField(\"@id\", id);\n");
+        s.append("        }\n");
+        s.append("        generator.writeStringField(\"@type\", TYPE);\n");
+        for (Field field : fields) {
+            String key = literal(field.property.getDeveloperName());
+            if (field.list) {
+                s.append("        if (").append(field.name).append(" != null && !").append(field.name).append(".isEmpty()) {\n");
+                s.append("            generator.writeArrayFieldStart(").append(key).append(");\n");
+                s.append("            for (").append(field.type.boxedType).append(" value : ").append(field.name).append(") {\n");
+                s.append("                generator.").append(field.type.writer).append("(value);\n");
+                s.append("            }\n");
+                s.append("            generator.writeEndArray();\n");
+            } else {
+                String present = field.flagged() ? "has" + field.accessor : field.name + " != null";
+                s.append("        if (").append(present).append(") {\n");
+                s.append("            generator.").append(field.type.writer).append("Field(").append(key).append(", ").append(field.name).append(");\n");
+            }
+            s.append("        }\n");
+        }
+        s.append("        generator.writeEndObject();\n");
+        s.append("    }\n");
+        s.append("}\n");
+        return s.toString();
+    }
+
+    // Conversions shared by the generated readers
+    private String supportClass() {
+        StringBuilder s = new StringBuilder();
+        header(s);
+        s.append("import com.fasterxml.jackson.core.JsonParseException;\n");
+        s.append("import com.fasterxml.jackson.core.JsonParser;\n");
+        s.append("import com.fasterxml.jackson.core.JsonToken;\n\n");
+        s.append("import java.io.IOException;\n");
+        s.append("import java.math.BigDecimal;\n");
+        s.append("import java.util.ArrayList;\n");
+        s.append("import java.util.List;\n\n");
+        s.append("/**\n");
+        s.append(" * Reads the values of the generated records. Values are plain JSON values, or JSON-LD value objects.\n");
+        s.append(" * Generated from the CIM shapes, do not edit.\n");
+        s.append(" */\n");
+        s.append("final class ").append(SUPPORT_CLASS).append(" {\n\n");
+        s.append("    private ").append(SUPPORT_CLASS).append("() {\n    }\n\n");
+
+        s.append("    static void startObject(JsonParser parser, String type) throws IOException {\n");
+        s.append("        if (parser.getCurrentToken() != JsonToken.START_OBJECT && parser.nextToken() != JsonToken.START_OBJECT) {\n");
+        s.append("            throw new JsonParseException(parser, \"Expected a \" + type + \" record\");\n");
+        s.append("        }\n");
+        s.append("    }\n\n");
+
+        s.append("    // Reads one value of a property\n");
+        s.append("    interface ValueReader<T> {\n");
+        s.append("        T read(JsonParser parser) throws IOException;\n");
+        s.append("    }\n\n");
+
+        s.append("    // Values of a multi-valued property, from an array or a single value, nulls are skipped\n");
+        s.append("    static <T> List<T> readList(JsonParser parser, ValueReader<T> reader) throws IOException {\n");
+        s.append("        List<T> values = new ArrayList<>();\n");
+        s.append("        if (parser.getCurrentToken() != JsonToken.START_ARRAY) {\n");
+        s.append("            values.add(reader.read(parser));\n");
+        s.append("            return values;\n");
+        s.append("        }\n");
+        s.append("        while (parser.nextToken() != JsonToken.END_ARRAY) {\n");
+        s.append("            if (parser.getCurrentToken() != JsonToken.VALUE_NULL) {\n");
+        s.append("                values.add(reader.read(parser));\n");
+        s.append("            }\n");
+        s.append("        }\n");
+        s.append("        return values;\n");
+        s.append("    }\n\n");
+
+        s.append("    static JsonParseException missing(JsonParser parser, String type, String property) {\n");
+        s.append("        return new JsonParseException(parser, \"Missing required property \" + property + \" of \" + type);\n");
+        s.append("    }\n\n");
+
+        s.append("    static String readString(JsonParser parser) throws IOException {\n");
+        s.append("        Object value = scalar(parser, \"@value\");\n");
+        s.append("        if (value instanceof String) {\n");
+        s.append("            return (String) value;\n");
+        s.append("        }\n");
+        s.append("        throw invalid(parser, \"a string\", value);\n");
+        s.append("    }\n\n");
+
+        s.append("    static String readReference(JsonParser parser) throws IOException {\n");
+        s.append("        Object value = scalar(parser, \"@id\");\n");
+        s.append("        if (value instanceof String) {\n");
+        s.append("            return (String) value;\n");
+        s.append("        }\n");
+        s.append("        throw invalid(parser, \"a reference\", value);\n");
+        s.append("    }\n\n");
+
+        s.append("    static boolean readBoolean(JsonParser parser) throws IOException {\n");
+        s.append("        JsonToken token = parser.getCurrentToken();\n");
+        s.append("        if (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) {\n");
+        s.append("            return token == JsonToken.VALUE_TRUE;\n");
+        s.append("        }\n");
+        s.append("        Object value = scalar(parser, \"@value\");\n");
+        s.append("        if (value instanceof Boolean) {\n");
+        s.append("            return (Boolean) value;\n");
+        s.append("        } else if (\"true\".equals(value) || \"1\".equals(value)) {\n");
+        s.append("            return true;\n");
+        s.append("        } else if (\"false\".equals(value) || \"0\".equals(value)) {\n");
+        s.append("            return false;\n");
+        s.append("        }\n");
+        s.append("        throw invalid(parser, \"a boolean\", value);\n");
+        s.append("    }\n\n");
+
+        numberReader(s, "int", "getIntValue", "Integer.parseInt", "intValueExact");
+        numberReader(s, "long", "getLongValue", "Long.parseLong", "longValueExact");
+        numberReader(s, "float", "getFloatValue", "Float.parseFloat", "floatValue");
+        numberReader(s, "double", "getDoubleValue", "Double.parseDouble", "doubleValue");
+
+        s.append("    static BigDecimal readDecimal(JsonParser parser) throws IOException {\n");
+        s.append("        JsonToken token = parser.getCurrentToken();\n");
+        s.append("        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {\n");
+        s.append("            return parser.getDecimalValue();\n");
+        s.append("        }\n");
+        s.append("        Object value = scalar(parser, \"@value\");\n");
+        s.append("        try {\n");
+        s.append("            return new BigDecimal(value.toString());\n");
+        s.append("        } catch (NumberFormatException | NullPointerException e) {\n");
+        s.append("            throw invalid(parser, \"a decimal\", value);\n");
+        s.append("        }\n");
+        s.append("    }\n\n");
+
+        s.append("    // The current value, or the value of a key of the current object\n");
+        s.append("    private static Object scalar(JsonParser parser, String key) throws IOException {\n");
+        s.append("        JsonToken token = parser.getCurrentToken();\n");
+        s.append("        if (token != JsonToken.START_OBJECT) {\n");
+        s.append("            return value(parser, token);\n");
+        s.append("        }\n");
+        s.append("        Object value = null;\n");
+        s.append("        while (parser.nextToken() == JsonToken.FIELD_NAME) {\n");
+        s.append("            String name = parser.getCurrentName();\n");
+        s.append("            token = parser.nextToken();\n");
+        s.append("            if (name.equals(key)) {\n");
+        s.append("                value = value(parser, token);\n");
+        s.append("            } else {\n");
+        s.append("                parser.skipChildren();\n");
+        s.append("            }\n");
+        s.append("        }\n");
+        s.append("        return value;\n");
+        s.append("    }\n\n");
+
+        s.append("    private static Object value(JsonParser parser, JsonToken token) throws IOException {\n");
+        s.append("        switch (token) {\n");
+        s.append("            case VALUE_STRING:\n");
+        s.append("                return parser.getText();\n");
+        s.append("            case VALUE_NUMBER_INT:\n");
+        s.append("            case VALUE_NUMBER_FLOAT:\n");
+        s.append("                return parser.getDecimalValue();\n");
+        s.append("            case VALUE_TRUE:\n");
+        s.append("                return Boolean.TRUE;\n");
+        s.append("            case VALUE_FALSE:\n");
+        s.append("                return Boolean.FALSE;\n");
+        s.append("            default:\n");
+        s.append("                parser.skipChildren();\n");
+        s.append("                return token;\n");
+        s.append("        }\n");
+        s.append("    }\n\n");
+
+        s.append("    private static JsonParseException invalid(JsonParser parser, String expected, Object value) {\n");
+        s.append("        return new JsonParseException(parser, \"Expected \" + expected + \", found \" + value);\n");
+        s.append("    }\n");
+        s.append("}\n");
+        return s.toString();
+    }
+
+    private static void numberReader(StringBuilder s, String type, String getter, String parse, String exact) {
+        String name = Character.toUpperCase(type.charAt(0)) + type.substring(1);
+        boolean integral = type.equals("int") || type.equals("long");
+        s.append("    static ").append(type).append(" read").append(name).append("(JsonParser parser) throws IOException {\n");
+        s.append("        JsonToken token = parser.getCurrentToken();\n");
+        s.append("        if (token == JsonToken.VALUE_NUMBER_INT").append(integral ? "" : " || token == JsonToken.VALUE_NUMBER_FLOAT").append(") {\n");
+        s.append("            return parser.").append(getter).append("();\n");
+        s.append("        }\n");
+        s.append("        Object value = scalar(parser, \"@value\");\n");
+        s.append("        try {\n");
+        s.append("            if (value instanceof BigDecimal) {\n");
+        s.append("                return ((BigDecimal) value).").append(exact).append("();\n");
+        s.append("            }\n");
+        s.append("            return ").append(parse).append("((String) value);\n");
+        s.append("        } catch (ArithmeticException | NumberFormatException | ClassCastException | NullPointerException e) {\n");
+        s.append("            throw invalid(parser, \"").append(type.equals("int") ? "an " : "a ").append(type).append("\", value);\n");
+        s.append("        }\n");
+        s.append("    }\n\n");
+    }
+
+    private void header(StringBuilder s) {
+        if (!packageName.isEmpty()) {
+            s.append("package ").append(packageName).append(";\n\n");
+        }
+    }
+
+    // Java identifier for a developer name
+    private static String identifier(String name, boolean type) {
+        StringBuilder id = new StringBuilder();
+        boolean upper = type;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isJavaIdentifierPart(c) && c != '$') {
+                id.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            } else {
+                upper = id.length() > 0;
+            }
+        }
+        if (id.length() == 0 || !Character.isJavaIdentifierStart(id.charAt(0))) {
+            id.insert(0, type ? "C" : "p");
+        }
+        if (!type) {
+            id.setCharAt(0, Character.toLowerCase(id.charAt(0)));
+        }
+        String identifier = id.toString();
+        return KEYWORDS.contains(identifier) ? identifier + "Value" : identifier;
+    }
+
+    private static String unique(String name, Set<String> used) {
+        String unique = name;
+        for (int i = 2; !used.add(unique); i++) {
+            unique = name + i;
+        }
+        return unique;
+    }
+
+    private static String literal(String value) {
+        StringBuilder s = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                s.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7e) {
+                s.append(String.format("\\u%04x", (int) c));
+            } else {
+                s.append(c);
+            }
+        }
+        return s.append('"').toString();
+    }
+
+    private static String comment(String text) {
+        return text.replace("*/", "*&#47;").replace("\n", " ");
+    }
+}
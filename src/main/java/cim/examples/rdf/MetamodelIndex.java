@@ -0,0 +1,387 @@
+package cim.examples.rdf;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.util.NodeUtils;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact index of the CIM metamodel: subject areas, entity groups, classes, properties and the SHACL shapes
+ * describing them.
+ * Every node in the indexed triples gets an int id, and the triples of each relation are stored as primitive arrays
+ * (compressed sparse rows) in both directions, so lookups do not go through the graph.
+ * Ids are assigned in the order SPARQL uses to sort RDF terms in ORDER BY, so comparing two ids compares the nodes
+ * and the ids returned by lookups are always sorted.
+ * The index is immutable and can be shared between threads.
+ */
+public class MetamodelIndex {
+
+    private static final String CIM = "http://cloudinformationmodel.org/model/";
+    private static final String SH = "http://www.w3.org/ns/shacl#";
+
+    // Relations stored in the index, one for each indexed predicate
+    public enum Relation {
+        TYPE(RDF.type.getURI()),
+        LABEL(RDFS.label.getURI()),
+        COMMENT(RDFS.comment.getURI()),
+        SUB_CLASS_OF(RDFS.subClassOf.getURI()),
+        DOMAIN(RDFS.domain.getURI()),
+        FIRST(RDF.first.getURI()),
+        REST(RDF.rest.getURI()),
+        ENTITY_GROUP(CIM + "entityGroup"),
+        SUBJECT_AREA(CIM + "subjectArea"),
+        CLASSES(CIM + "classes"),
+        PROPERTIES(CIM + "properties"),
+        TARGET_CLASS(SH + "targetClass"),
+        AND(SH + "and"),
+        PROPERTY(SH + "property"),
+        PATH(SH + "path"),
+        DATATYPE(SH + "datatype"),
+        NODE(SH + "node"),
+        MIN_COUNT(SH + "minCount"),
+        MAX_COUNT(SH + "maxCount");
+
+        private final Node predicate;
+
+        Relation(String uri) {
+            this.predicate = NodeFactory.createURI(uri);
+        }
+
+        public Node getPredicate() {
+            return predicate;
+        }
+    }
+
+    private static final int[] NONE = new int[0];
+
+    private final Node[] nodes;
+    private final Map<Node, Integer> ids;
+    // for every relation, objects of subject s are targets[offsets[s]] ... targets[offsets[s + 1] - 1]
+    private final int[][] offsets;
+    private final int[][] targets;
+    private final int[][] reverseOffsets;
+    private final int[][] reverseTargets;
+
+    private MetamodelIndex(Node[] nodes, Map<Node, Integer> ids, int[][] offsets, int[][] targets,
+                           int[][] reverseOffsets, int[][] reverseTargets) {
+        this.nodes = nodes;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.reverseOffsets = reverseOffsets;
+        this.reverseTargets = reverseTargets;
+    }
+
+    /**
+     * Builds the index with a single lookup per indexed predicate
+     * @param graph
+     * @return
+     */
+    public static MetamodelIndex build(Graph graph) {
+        Relation[] relations = Relation.values();
+        Map<Node, Integer> interned = new HashMap<>();
+        List<Node> found = new ArrayList<>();
+        IntList[] pairs = new IntList[relations.length];
+
+        for (Relation relation : relations) {
+            IntList list = new IntList();
+            ExtendedIterator<Triple> it = graph.find(Node.ANY, relation.predicate, Node.ANY);
+            try {
+                while (it.hasNext()) {
+                    Triple t = it.next();
+                    list.add(intern(t.getSubject(), interned, found));
+                    list.add(intern(t.getObject(), interned, found));
+                }
+            } finally {
+                it.close();
+            }
+            pairs[relation.ordinal()] = list;
+        }
+
+        // renumber the nodes in SPARQL term order
+        int size = interned.size();
+        Node[] nodes = found.toArray(new Node[size]);
+        Arrays.sort(nodes, NodeUtils::compareRDFTerms);
+        Map<Node, Integer> ids = new HashMap<>(size * 2);
+        int[] renumbered = new int[size];
+        for (int id = 0; id < size; id++) {
+            ids.put(nodes[id], id);
+        }
+        for (int id = 0; id < size; id++) {
+            renumbered[id] = ids.get(found.get(id));
+        }
+
+        int[][] offsets = new int[relations.length][];
+        int[][] targets = new int[relations.length][];
+        int[][] reverseOffsets = new int[relations.length][];
+        int[][] reverseTargets = new int[relations.length][];
+        for (Relation relation : relations) {
+            int r = relation.ordinal();
+            IntList list = pairs[r];
+            int count = list.size / 2;
+            int[] subjects = new int[count];
+            int[] objects = new int[count];
+            for (int i = 0; i < count; i++) {
+                subjects[i] = renumbered[list.values[2 * i]];
+                objects[i] = renumbered[list.values[2 * i + 1]];
+            }
+            offsets[r] = new int[size + 1];
+            targets[r] = compress(size, subjects, objects, offsets[r]);
+            reverseOffsets[r] = new int[size + 1];
+            reverseTargets[r] = compress(size, objects, subjects, reverseOffsets[r]);
+        }
+
+        return new MetamodelIndex(nodes, ids, offsets, targets, reverseOffsets, reverseTargets);
+    }
+
+    private static int intern(Node node, Map<Node, Integer> interned, List<Node> found) {
+        Integer id = interned.get(node);
+        if (id == null) {
+            id = found.size();
+            interned.put(node, id);
+            found.add(node);
+        }
+        return id;
+    }
+
+    // Builds the sorted rows of targets for each source, filling the offsets of each row
+    private static int[] compress(int size, int[] sources, int[] destinations, int[] offsets) {
+        for (int source : sources) {
+            offsets[source + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] next = Arrays.copyOf(offsets, size);
+        int[] targets = new int[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            targets[next[sources[i]]++] = destinations[i];
+        }
+        for (int i = 0; i < size; i++) {
+            Arrays.sort(targets, offsets[i], offsets[i + 1]);
+        }
+        return targets;
+    }
+
+    // Number of nodes in the index
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Node for an id
+     * @param id
+     * @return
+     */
+    public Node node(int id) {
+        return nodes[id];
+    }
+
+    /**
+     * Id of a node
+     * @param node
+     * @return the id, or -1 if the node is not in the index
+     */
+    public int id(Node node) {
+        Integer id = ids.get(node);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Id of the node for a URI
+     * @param uri
+     * @return the id, or -1 if the URI is not in the index
+     */
+    public int id(String uri) {
+        return id(NodeFactory.createURI(uri));
+    }
+
+    /**
+     * Objects of the triples with the subject
+     * @param relation
+     * @param subject
+     * @return ids of the objects, in SPARQL order
+     */
+    public int[] objects(Relation relation, int subject) {
+        return slice(offsets[relation.ordinal()], targets[relation.ordinal()], subject);
+    }
+
+    /**
+     * Subjects of the triples with the object
+     * @param relation
+     * @param object
+     * @return ids of the subjects, in SPARQL order
+     */
+    public int[] subjects(Relation relation, int object) {
+        return slice(reverseOffsets[relation.ordinal()], reverseTargets[relation.ordinal()], object);
+    }
+
+    /**
+     * First object of the triples with the subject
+     * @param relation
+     * @param subject
+     * @return the id of the object, or -1 if there are none
+     */
+    public int object(Relation relation, int subject) {
+        int[] offsets = this.offsets[relation.ordinal()];
+        return subject < 0 || offsets[subject] == offsets[subject + 1] ? -1 : targets[relation.ordinal()][offsets[subject]];
+    }
+
+    /**
+     * Checks if a triple is in the index
+     * @param subject
+     * @param relation
+     * @param object
+     * @return
+     */
+    public boolean contains(int subject, Relation relation, int object) {
+        if (subject < 0 || object < 0) {
+            return false;
+        }
+        int[] offsets = this.offsets[relation.ordinal()];
+        return Arrays.binarySearch(targets[relation.ordinal()], offsets[subject], offsets[subject + 1], object) >= 0;
+    }
+
+    /**
+     * All the subjects of a relation
+     * @param relation
+     * @return ids of the subjects with at least one object, in SPARQL order
+     */
+    public int[] subjects(Relation relation) {
+        int[] offsets = this.offsets[relation.ordinal()];
+        IntList subjects = new IntList();
+        for (int id = 0; id < nodes.length; id++) {
+            if (offsets[id] < offsets[id + 1]) {
+                subjects.add(id);
+            }
+        }
+        return subjects.toArray();
+    }
+
+    // Subject areas in the model
+    public int[] subjectAreas() {
+        return subjects(Relation.TYPE, id(CIM + "SubjectArea"));
+    }
+
+    // Entity groups in a subject area
+    public int[] entityGroups(int subjectArea) {
+        return objects(Relation.ENTITY_GROUP, subjectArea);
+    }
+
+    // Classes in an entity group
+    public int[] classes(int entityGroup) {
+        return objects(Relation.CLASSES, entityGroup);
+    }
+
+    // Properties in an entity group
+    public int[] properties(int entityGroup) {
+        return objects(Relation.PROPERTIES, entityGroup);
+    }
+
+    // Schemas targeting a class
+    public int[] schemas(int classId) {
+        return subjects(Relation.TARGET_CLASS, classId);
+    }
+
+    /**
+     * Shapes reachable from a class through <code>sh:and*</code>, including the class itself
+     * @param classId
+     * @return
+     */
+    public int[] andClosure(int classId) {
+        IntList closure = new IntList();
+        closure.add(classId);
+        for (int i = 0; i < closure.size; i++) {
+            for (int and : objects(Relation.AND, closure.values[i])) {
+                if (!closure.contains(and)) {
+                    closure.add(and);
+                }
+            }
+        }
+        return closure.toArray();
+    }
+
+    /**
+     * Shapes reachable from a schema through <code>(sh:and/rdf:rest/rdf:first)?</code>, including the schema itself
+     * @param schemaId
+     * @return
+     */
+    public int[] schemaParts(int schemaId) {
+        IntList parts = new IntList();
+        for (int list : objects(Relation.AND, schemaId)) {
+            for (int rest : objects(Relation.REST, list)) {
+                for (int first : objects(Relation.FIRST, rest)) {
+                    if (!parts.contains(first)) {
+                        parts.add(first);
+                    }
+                }
+            }
+        }
+        if (!parts.contains(schemaId)) {
+            parts.add(schemaId);
+        }
+        return parts.toArray();
+    }
+
+    /**
+     * Property shapes of a class, including those of the shapes it is combined with through <code>sh:and</code>
+     * @param classId
+     * @return
+     */
+    public int[] propertyShapes(int classId) {
+        IntList shapes = new IntList();
+        for (int shape : andClosure(classId)) {
+            for (int property : objects(Relation.PROPERTY, shape)) {
+                if (!shapes.contains(property)) {
+                    shapes.add(property);
+                }
+            }
+        }
+        int[] sorted = shapes.toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static int[] slice(int[] offsets, int[] targets, int id) {
+        if (id < 0 || offsets[id] == offsets[id + 1]) {
+            return NONE;
+        }
+        return Arrays.copyOfRange(targets, offsets[id], offsets[id + 1]);
+    }
+
+    // Growable list of ints
+    static class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        boolean contains(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package cim.examples.rdf;
+
+import cim.examples.rdf.MetamodelIndex.Relation;
+import org.apache.jena.graph.Node;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The reports of {@link Queries} and {@link RegenerateQueries} about the structure of the model, computed from a
+ * {@link MetamodelIndex} instead of running SPARQL queries.
+ * Every report produces the same rows, in the same order, as its SPARQL query: rows are sorted by the ORDER BY
+ * variables and then by the rest of the variables of the query, like ARQ does.
+ */
+public class MetamodelReports {
+
+    private static final String CIM_NS = RegenerateQueries.CIM_NS;
+    private static final int[] UNBOUND = {-1};
+
+    private final MetamodelIndex index;
+    private final int cimId;
+    private final int subjectAreaType;
+    // local names of the nodes as written in the tables, computed on first use
+    private final String[] ids;
+
+    public MetamodelReports(MetamodelIndex index) {
+        this.index = index;
+        this.cimId = index.id(CIM_NS + "id");
+        this.subjectAreaType = index.id(CIM_NS + "SubjectArea");
+        this.ids = new String[index.size()];
+    }
+
+    public MetamodelIndex getIndex() {
+        return index;
+    }
+
+    public String listClasses() {
+        return Queries.asString(this::listClasses);
+    }
+
+    /**
+     * Writes the description of all classes and their properties, like {@link Queries#listClasses(Writer)}
+     * @param writer
+     * @throws IOException
+     */
+    public void listClasses(Writer writer) throws IOException {
+        // class, property, property shape, and shape, class description, class name, property description, property name
+        List<int[]> rows = new ArrayList<>();
+        for (int k : index.subjects(Relation.LABEL)) {
+            for (int kn : index.objects(Relation.LABEL, k)) {
+                for (int kd : index.objects(Relation.COMMENT, k)) {
+                    for (int and : index.andClosure(k)) {
+                        for (int shape : index.objects(Relation.PROPERTY, and)) {
+                            for (int p : index.objects(Relation.PATH, shape)) {
+                                for (int pd : index.objects(Relation.COMMENT, p)) {
+                                    for (int pn : index.objects(Relation.LABEL, p)) {
+                                        rows.add(new int[]{k, p, shape, and, kd, kn, pd, pn});
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        sort(rows);
+
+        int lastClass = -1;
+        int lastProperty = -1;
+        for (int[] row : rows) {
+            if (row[0] != lastClass) {
+                writer.write(" => Class: " + data(row[5]) + "[" + uri(row[0]) + "]\n");
+                writer.write("       " + data(row[4]) + "\n");
+                writer.write("    Properties: \n");
+                lastClass = row[0];
+            }
+            if (row[1] != lastProperty) {
+                writer.write("    - " + data(row[7]) + "[" + uri(row[1]) + "] \n");
+                writer.write("         " + data(row[6]) + "\n");
+                lastProperty = row[1];
+            }
+        }
+    }
+
+    public String reconstructTable() {
+        return Queries.asString(this::reconstructTable);
+    }
+
+    /**
+     * Writes the reconstructed table of classes and properties, like {@link Queries#reconstructTable(Writer)}
+     * @param writer
+     * @throws IOException
+     */
+    public void reconstructTable(Writer writer) throws IOException {
+        // classId, propertyId, and shape, description, developerName, entityGroup, entityGroupId, minCount,
+        // propertyDatatype, propertyDescription, propertyDeveloperName, propertyShape, referencedClass, referencedName
+        List<int[]> rows = new ArrayList<>();
+        for (int eg : index.subjects(Relation.CLASSES)) {
+            for (int k : index.classes(eg)) {
+                for (int egn : index.objects(Relation.LABEL, eg)) {
+                    for (int kn : index.objects(Relation.LABEL, k)) {
+                        for (int kd : index.objects(Relation.COMMENT, k)) {
+                            for (int and : index.andClosure(k)) {
+                                for (int shape : index.objects(Relation.PROPERTY, and)) {
+                                    for (int p : index.objects(Relation.PATH, shape)) {
+                                        for (int pn : index.objects(Relation.LABEL, p)) {
+                                            for (int pd : index.objects(Relation.COMMENT, p)) {
+                                                for (int dt : optional(index.objects(Relation.DATATYPE, shape))) {
+                                                    for (int[] ref : references(shape)) {
+                                                        for (int min : optional(index.objects(Relation.MIN_COUNT, shape))) {
+                                                            if ((dt >= 0 && dt != cimId) || ref[1] >= 0) {
+                                                                rows.add(new int[]{k, p, and, kd, kn, egn, eg, min, dt, pd, pn, shape, ref[0], ref[1]});
+                                                            }
+                                                        }
+                                                    }
+                                                }
+                                            }
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        sort(rows);
+
+        Set<List<Integer>> distinct = new HashSet<>();
+        for (int[] row : rows) {
+            boolean required = required(row[7]);
+            if (!distinct.add(Arrays.asList(row[4], row[3], row[5], row[10], row[8], row[13], required ? 1 : 0))) {
+                continue;
+            }
+
+            writer.write("  developerName: " + data(row[4]) + "\n");
+            writer.write("  description: " + data(row[3]) + "\n");
+            writer.write("  entityGroup: " + data(row[5]) + "\n");
+
+            if (row[8] >= 0) {
+                writer.write("  propertyDeveloperName: " + data(row[10]) + "\n");
+                writer.write("  propertyDatatype: " + uri(row[8]) + "\n");
+            }
+            if (row[13] >= 0) {
+                writer.write("  propertyDeveloperName: " + data(row[13]).replace(" ", "") + "Id" + "\n");
+                writer.write("  propertyDatatype: " + "URI reference" + "\n");
+                writer.write("  referencedRelationshipName: " + data(row[10]) + "\n");
+                writer.write("  referencedEntity: " + data(row[13]) + "\n");
+            }
+
+            writer.write("  required: " + required + "\n");
+
+            writer.write("----\n");
+        }
+    }
+
+    public String subjectAreas() {
+        return Queries.asString(this::subjectAreas);
+    }
+
+    public void subjectAreas(Writer writer) throws IOException {
+        writer.write("subjectAreaId\tsubjectAreaName\tdescription\n");
+
+        // subjectAreaId, description, subjectAreaName
+        List<int[]> rows = new ArrayList<>();
+        for (int sa : index.subjects(Relation.TYPE, subjectAreaType)) {
+            for (int name : optional(index.objects(Relation.LABEL, sa))) {
+                for (int description : optional(index.objects(Relation.COMMENT, sa))) {
+                    rows.add(new int[]{sa, description, name});
+                }
+            }
+        }
+        sort(rows);
+
+        for (int[] row : rows) {
+            writer.write(maybeId(row[0]));
+            writer.write(maybeData(row[2]));
+            writer.write(maybeData(row[1]));
+            writer.write("\n");
+        }
+    }
+
+    public String entityGroups() {
+        return Queries.asString(this::entityGroups);
+    }
+
+    public void entityGroups(Writer writer) throws IOException {
+        writer.write("subjectAreaId\tentityGroupId\tentityGroupN\ttype\tsubjectArea\tdescription\n");
+
+        // subjectAreaId, description, entityGroupId, entityGroupName, subjectArea, type
+        List<int[]> rows = new ArrayList<>();
+        for (int sa : index.subjects(Relation.ENTITY_GROUP)) {
+            for (int eg : index.entityGroups(sa)) {
+                for (int type : optional(index.objects(Relation.TYPE, eg))) {
+                    for (int name : optional(index.objects(Relation.LABEL, eg))) {
+                        for (int description : optional(index.objects(Relation.COMMENT, eg))) {
+                            for (int subjectArea : optional(index.objects(Relation.SUBJECT_AREA, eg))) {
+                                rows.add(new int[]{sa, description, eg, name, subjectArea, type});
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        sort(rows);
+
+        for (int[] row : rows) {
+            writer.write(maybeId(row[0]));
+            writer.write(maybeId(row[2]));
+            writer.write(maybeData(row[3]));
+            writer.write(maybeId(row[5]));
+            writer.write(maybeData(row[4]));
+            writer.write(maybeData(row[1]));
+            writer.write("\n");
+        }
+    }
+
+    public String classConcepts() {
+        return Queries.asString(this::classConcepts);
+    }
+
+    public void classConcepts(Writer writer) throws IOException {
+        writer.write("subjectAreaId\tentityGroupId\tclassName\tclassId\ttype\tsubClassOf\tdescription\n");
+
+        // subjectAreaId, entityGroupId, classId, className, description, subClassOf, type
+        List<int[]> rows = new ArrayList<>();
+        for (int sa : index.subjects(Relation.ENTITY_GROUP)) {
+            for (int eg : index.entityGroups(sa)) {
+                for (int k : index.classes(eg)) {
+                    for (int name : index.objects(Relation.LABEL, k)) {
+                        for (int description : index.objects(Relation.COMMENT, k)) {
+                            for (int type : index.objects(Relation.TYPE, k)) {
+                                for (int subClassOf : optional(index.objects(Relation.SUB_CLASS_OF, k))) {
+                                    rows.add(new int[]{sa, eg, k, name, description, subClassOf, type});
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        sort(rows);
+
+        for (int[] row : rows) {
+            writer.write(maybeId(row[0]));
+            writer.write(maybeId(row[1]));
+            writer.write(maybeId(row[2]));
+            writer.write(maybeData(row[3]));
+            writer.write(maybeId(row[6]));
+            writer.write(maybeId(row[5]));
+            writer.write(maybeData(row[4]));
+            writer.write("\n");
+        }
+    }
+
+    public String propertyConcepts() {
+        return Queries.asString(this::propertyConcepts);
+    }
+
+    public void propertyConcepts(Writer writer) throws IOException {
+        writer.write("subjectAreaId\tentityGroupId\tpropertyId\tprope\tdomain\tsubClassOf\tEntityAndAttribute\tpropertyGUID\n");
+
+        // subjectAreaId, entityGroupId, propertyId, schema part, attributeId, domain, shapeId, subClassOf, type
+        List<int[]> rows = new ArrayList<>();
+        for (int sa : index.subjects(Relation.ENTITY_GROUP)) {
+            for (int eg : index.entityGroups(sa)) {
+                for (int p : index.properties(eg)) {
+                    for (int type : index.objects(Relation.TYPE, p)) {
+                        for (int domain : index.objects(Relation.DOMAIN, p)) {
+                            if (!index.contains(eg, Relation.CLASSES, domain)) {
+                                continue;
+                            }
+                            List<int[]> attributes = new ArrayList<>();
+                            for (int shape : index.schemas(domain)) {
+                                for (int part : index.schemaParts(shape)) {
+                                    for (int attribute : index.objects(Relation.PROPERTY, part)) {
+                                        if (index.contains(attribute, Relation.PATH, p)) {
+                                            attributes.add(new int[]{part, attribute, shape});
+                                        }
+                                    }
+                                }
+                            }
+                            if (attributes.isEmpty()) {
+                                attributes.add(new int[]{-1, -1, -1});
+                            }
+                            for (int subClassOf : optional(index.objects(Relation.SUB_CLASS_OF, domain))) {
+                                for (int[] attribute : attributes) {
+                                    rows.add(new int[]{sa, eg, p, attribute[0], attribute[1], domain, attribute[2], subClassOf, type});
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        sort(rows);
+
+        for (int[] row : rows) {
+            writer.write(maybeId(row[0]));
+            writer.write(maybeId(row[1]));
+            writer.write(maybeId(row[2]));
+            writer.write(maybeId(row[8]));
+            writer.write(maybeId(row[5]));
+            writer.write(maybeId(row[7]));
+            writer.write(maybeId(row[5]).replace("\t", ":") + maybeId(row[2]));
+            writer.write(maybeId(row[4]));
+            writer.write("\n");
+        }
+    }
+
+    public String schemas() {
+        return Queries.asString(this::schemas);
+    }
+
+    public void schemas(Writer writer) throws IOException {
+        writer.write("targetClass\tsubjectAreaId\tentityGroupId\tschemaId\tsche\ttargetClass\n");
+
+        // subjectAreaId, entityGroupId, targetClass, schemaId, type
+        List<int[]> rows = new ArrayList<>();
+        for (int sa : index.subjects(Relation.ENTITY_GROUP)) {
+            for (int eg : index.entityGroups(sa)) {
+                for (int k : index.classes(eg)) {
+                    for (int schema : index.schemas(k)) {
+                        for (int type : index.objects(Relation.TYPE, schema)) {
+                            rows.add(new int[]{sa, eg, k, schema, type});
+                        }
+                    }
+                }
+            }
+        }
+        sort(rows);
+
+        for (int[] row : rows) {
+            writer.write(maybeId(row[2]));
+            writer.write(maybeId(row[0]));
+            writer.write(maybeId(row[1]));
+            writer.write(maybeId(row[3]));
+            writer.write(maybeId(row[4]));
+            writer.write(maybeId(row[2]));
+            writer.write("\n");
+        }
+    }
+
+    public String schemaProperties() {
+        return Queries.asString(this::schemaProperties);
+    }
+
+    public void schemaProperties(Writer writer) throws IOException {
+        writer.write("fullPath\tpath\tsubjectAreaId\tentityGroupId\tschemaId\tpropertyId\tdatatype\tminCount\tmaxCount\tnode\tschemaName\n");
+
+        // subjectAreaId, entityGroupId, targetClass, schema part, attributeId, datatype, maxCount, minCount, node,
+        // path, schemaId
+        List<int[]> rows = new ArrayList<>();
+        for (int sa : index.subjects(Relation.ENTITY_GROUP)) {
+            for (int eg : index.entityGroups(sa)) {
+                for (int k : index.classes(eg)) {
+                    for (int schema : index.schemas(k)) {
+                        for (int part : index.schemaParts(schema)) {
+                            for (int attribute : index.objects(Relation.PROPERTY, part)) {
+                                for (int path : index.objects(Relation.PATH, attribute)) {
+                                    for (int datatype : optional(index.objects(Relation.DATATYPE, attribute))) {
+                                        for (int min : optional(index.objects(Relation.MIN_COUNT, attribute))) {
+                                            for (int max : optional(index.objects(Relation.MAX_COUNT, attribute))) {
+                                                for (int node : optional(index.objects(Relation.NODE, attribute))) {
+                                                    rows.add(new int[]{sa, eg, k, part, attribute, datatype, max, min, node, path, schema});
+                                                }
+                                            }
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        sort(rows);
+
+        for (int[] row : rows) {
+            writer.write(maybeId(row[2]).replace("\t", ":") + maybeId(row[9]));
+            writer.write(maybeId(row[9]));
+            writer.write(maybeId(row[0]));
+            writer.write(maybeId(row[1]));
+            writer.write(maybeId(row[10]));
+            writer.write(maybeId(row[4]));
+            writer.write(maybeId(row[5]));
+            writer.write(maybeData(row[7]));
+            writer.write(maybeData(row[6]));
+            writer.write(maybeId(row[8]));
+            writer.write(maybeId(row[2]));
+            writer.write("\n");
+        }
+    }
+
+    /**
+     * All the tables, by name, in the same order as {@link RegenerateQueries#tables()}
+     * @return
+     */
+    public Map<String, Queries.Report> tables() {
+        Map<String, Queries.Report> tables = new LinkedHashMap<>();
+        tables.put("subjectAreas", this::subjectAreas);
+        tables.put("entityGroups", this::entityGroups);
+        tables.put("classConcepts", this::classConcepts);
+        tables.put("propertyConcepts", this::propertyConcepts);
+        tables.put("schemas", this::schemas);
+        tables.put("schemaProperties", this::schemaProperties);
+        return tables;
+    }
+
+    /**
+     * Exports every table to its own <code>&lt;name&gt;.tsv</code> file in a directory, like
+     * {@link RegenerateQueries#exportTables(Path, ExecutorService)}
+     * @param directory
+     * @param executor
+     * @return the files written, by table name
+     * @throws IOException
+     */
+    public Map<String, Path> exportTables(Path directory, ExecutorService executor) throws IOException {
+        return Queries.export(tables(), directory, executor);
+    }
+
+    // Sorts rows comparing the ids in each column, unbound values first
+    private static void sort(List<int[]> rows) {
+        rows.sort((a, b) -> {
+            for (int i = 0; i < a.length; i++) {
+                if (a[i] != b[i]) {
+                    return Integer.compare(a[i], b[i]);
+                }
+            }
+            return 0;
+        });
+    }
+
+    // Values of an OPTIONAL pattern, a single unbound value if there are none
+    private static int[] optional(int[] values) {
+        return values.length == 0 ? UNBOUND : values;
+    }
+
+    // Values of OPTIONAL { ?propertyShape sh:node ?referencedClass . ?referencedClass rdfs:label ?referencedName }
+    private List<int[]> references(int shape) {
+        List<int[]> references = new ArrayList<>();
+        for (int ref : index.objects(Relation.NODE, shape)) {
+            for (int name : index.objects(Relation.LABEL, ref)) {
+                references.add(new int[]{ref, name});
+            }
+        }
+        if (references.isEmpty()) {
+            references.add(new int[]{-1, -1});
+        }
+        return references;
+    }
+
+    // Same as IF(BOUND(?minCount) && xsd:integer(?minCount) > 0, TRUE, FALSE)
+    private boolean required(int minCount) {
+        if (minCount < 0) {
+            return false;
+        }
+        try {
+            return new BigDecimal(data(minCount).trim()).toBigInteger().signum() > 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private String uri(int id) {
+        Node node = index.node(id);
+        return node.isURI() ? node.getURI() : null;
+    }
+
+    private String data(int id) {
+        return index.node(id).getLiteralLexicalForm();
+    }
+
+    private String maybeData(int id) {
+        return id < 0 ? "\t" : data(id) + "\t";
+    }
+
+    private String maybeId(int id) {
+        if (id < 0) {
+            return "\t";
+        }
+        String cached = ids[id];
+        if (cached == null) {
+            String uri = uri(id);
+            cached = uri == null ? "\t" : TsvWriter.localName(uri) + "\t"; // empty for blank nodes
+            ids[id] = cached;
+        }
+        return cached;
+    }
+}
@@ -0,0 +1,89 @@
+package cim.examples.rdf;
+
+import org.apache.jena.query.ARQ;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.ResultBinding;
+import org.apache.jena.sparql.engine.Plan;
+import org.apache.jena.sparql.engine.QueryEngineFactory;
+import org.apache.jena.sparql.engine.QueryEngineRegistry;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingRoot;
+import org.apache.jena.sparql.engine.binding.BindingUtils;
+import org.apache.jena.sparql.util.Context;
+
+import java.util.function.Consumer;
+
+/**
+ * SPARQL SELECT query that is parsed, compiled to algebra and optimized only once, and then executed as many times
+ * as needed over any model.
+ * Values for the variables of the query can be passed as initial bindings on each execution, instead of building
+ * a new query string. Bound variables must be used in the graph patterns of the query, not as the target of BIND or
+ * aggregates.
+ * Prepared queries are immutable and can be shared and executed concurrently from multiple threads.
+ */
+public class PreparedQuery {
+
+    private final Query query;
+    private final Op op;
+
+    public PreparedQuery(String queryString) {
+        this.query = QueryFactory.create(queryString);
+        this.op = Algebra.optimize(Algebra.compile(query));
+    }
+
+    // The parsed query
+    public Query getQuery() {
+        return query;
+    }
+
+    /**
+     * Expands a CURIE using the prefixes declared in the query. Full URIs between angle brackets are also accepted.
+     * @param uriOrCurie
+     * @return
+     */
+    public String expandPrefix(String uriOrCurie) {
+        if (uriOrCurie.startsWith("<") && uriOrCurie.endsWith(">")) {
+            return uriOrCurie.substring(1, uriOrCurie.length() - 1);
+        }
+        return query.getPrefixMapping().expandPrefix(uriOrCurie);
+    }
+
+    /**
+     * Executes the query over a model passing every solution to the handler.
+     * The already optimized algebra is evaluated directly, so no parsing or optimization takes place.
+     * @param model
+     * @param bindings initial values for variables in the query, null if there are none
+     * @param handler
+     */
+    public void select(Model model, QuerySolution bindings, Consumer<QuerySolution> handler) {
+        DatasetGraph dataset = DatasetGraphFactory.wrap(model.getGraph());
+        Context context = Context.setupContextExec(ARQ.getContext(), dataset);
+        context.set(ARQ.optimization, false);
+        Binding input = bindings == null ? BindingRoot.create() : BindingUtils.asBinding(bindings);
+
+        QueryEngineFactory factory = QueryEngineRegistry.findFactory(op, dataset, context);
+        Plan plan = factory.create(op, dataset, input, context);
+        QueryIterator results = plan.iterator();
+        try {
+            while (results.hasNext()) {
+                handler.accept(new ResultBinding(model, results.nextBinding()));
+            }
+        } finally {
+            results.close();
+            plan.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return query.toString();
+    }
+}
@@ -1,17 +1,44 @@
 package cim.examples.rdf;
 
+import cim.loader.CIMLoader;
+import cim.loader.ShapeClosure;
 import org.apache.jena.atlas.io.AWriter;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.query.*;
 import org.apache.jena.rdf.model.Literal;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.shared.Lock;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.GraphView;
+import org.apache.jena.system.Txn;
 import org.apache.jena.tdb.store.Hash;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 public class Queries {
 
@@ -25,261 +52,527 @@ public class Queries {
 
     // RDF model being queried
     protected final Model model;
+    // true to query the triples materialized by ShapeClosure instead of evaluating sh:and paths
+    protected final boolean shapeClosure;
+    // results of the reports, null if they are not cached
+    private volatile ResultCache cache;
 
     public Queries(Model model) {
+        this(model, false);
+    }
+
+    /**
+     * @param model
+     * @param shapeClosure true if the model was loaded with {@link CIMLoader#setShapeClosure(boolean)}, so queries
+     *                     use the materialized property shapes with plain joins
+     */
+    public Queries(Model model, boolean shapeClosure) {
         this.model = model;
+        this.shapeClosure = shapeClosure;
     }
 
     /**
-     * Counts elements in the model
-     * @param modelElementType URI for the type of element being counted
+     * Caches the results of the reports and counts while the version of the cache does not change, so repeated calls
+     * are answered from memory. Reports are still streamed to their writers the first time they run.
+     * @param cache the cache, null to disable caching, the default
      */
-    public int countsQuery(String modelElementType) {
-        String queryString =
-                PREFIXES +
-                        "SELECT (COUNT(?modelElement) AS ?total) { " +
-                        "    ?modelElement a " + modelElementType + " ." +
-                        "}";
-
-        Query query = QueryFactory.create(queryString) ;
-
-        try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-            ResultSet results = qexec.execSelect() ;
-            QuerySolution soln = results.nextSolution();
-            Literal count = soln.getLiteral("total");
-            return count.getInt();
+    public void setCache(ResultCache cache) {
+        this.cache = cache;
+    }
+
+    public ResultCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Writes a report, from the cache if it was already computed for the current version of the model.
+     * Otherwise the report is written while a copy of its output is kept for the cache, up to the maximum weight.
+     * @param key name of the report and its parameters
+     * @param writer
+     * @param report
+     * @throws IOException
+     */
+    protected void cached(String key, Writer writer, Report report) throws IOException {
+        ResultCache cache = this.cache;
+        if (cache == null) {
+            report.write(writer);
+            return;
+        }
+        Object cached = cache.get(key);
+        if (cached != null) {
+            writer.write((String) cached);
+            return;
+        }
+        long version = cache.version();
+        CopyWriter copy = new CopyWriter(writer, cache.getMaxWeight());
+        report.write(copy);
+        if (!copy.truncated) {
+            cache.put(key, copy.copy.toString(), version);
         }
     }
 
-    public String listClasses() {
-        StringWriter writer = new StringWriter();
-        String queryString =
-                PREFIXES +
-                        "SELECT * { " +
-                        "    ?class rdfs:label ?className ." +
-                        "    ?class rdfs:comment ?classDescription ." +
-                        "    ?class sh:and*/sh:property/sh:path ?property ." +
-                        "    ?property rdfs:comment ?propertyDescription ." +
-                        "    ?property rdfs:label ?propertyName ." +
-                        "} ORDER BY ?class ?property";
-
-        Query query = QueryFactory.create(queryString) ;
-
-        try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-            ResultSet results = qexec.execSelect() ;
-            String lastClass = null;
-            String lastProperty = null;
-            while (results.hasNext()) {
-                QuerySolution soln = results.nextSolution();
-                Resource k = soln.getResource("class");
-                Resource p = soln.getResource("property");
-                Literal kn = soln.getLiteral("className");
-                Literal pn = soln.getLiteral("propertyName");
-                Literal kd = soln.getLiteral("classDescription");
-                Literal pd = soln.getLiteral("propertyDescription");
-                if (k.getURI() != lastClass) {
-                    writer.write(" => Class: " + kn.getString() + "[" + k.getURI() + "]\n");
-                    writer.write("       " + kd.getString() + "\n");
-                    writer.write("    Properties: \n");
-                    lastClass = k.getURI();
+    // Writes to a writer keeping a copy of the output, as long as it is no longer than a limit
+    private static class CopyWriter extends Writer {
+        private final Writer out;
+        private final long limit;
+        private final StringBuilder copy = new StringBuilder();
+        private boolean truncated = false;
+
+        CopyWriter(Writer out, long limit) {
+            this.out = out;
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            if (!truncated) {
+                if (copy.length() + length > limit) {
+                    truncated = true;
+                    copy.setLength(0);
+                } else {
+                    copy.append(buffer, offset, length);
                 }
-                if (p.getURI() != lastProperty) {
-                    writer.write("    - " + pn.getString() + "[" + p.getURI() + "] \n");
-                    writer.write("         " + pd.getString() + "\n");
-                    lastProperty = p.getURI();
+            }
+        }
+
+        @Override
+        public void write(String str, int offset, int length) throws IOException {
+            out.write(str, offset, length);
+            if (!truncated) {
+                if (copy.length() + length > limit) {
+                    truncated = true;
+                    copy.setLength(0);
+                } else {
+                    copy.append(str, offset, offset + length);
                 }
             }
         }
 
-        return writer.toString();
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
     }
 
+    /**
+     * Variant of a query using the triples materialized by {@link ShapeClosure} instead of the sh:and property paths
+     * @param query
+     * @return
+     */
+    protected static String withShapeClosure(String query) {
+        return query
+                .replace("sh:and*/sh:property", "<" + ShapeClosure.INHERITED_PROPERTY + ">")
+                .replace("(sh:and/rdf:rest/rdf:first)?/sh:property", "<" + ShapeClosure.SCHEMA_PROPERTY + ">");
+    }
 
-    public String reconstructTable() {
-        StringWriter writer = new StringWriter();
-        String queryString =
-                PREFIXES +
-                         "SELECT DISTINCT " +
-                        "  ?developerName ?description ?entityGroup ?propertyDeveloperName ?propertyDatatype ?referencedName  " +
-                        "  (IF(BOUND(?minCount) && xsd:integer(?minCount) > 0, TRUE, FALSE) AS ?required)" +
-                        " {" +
-                        "    ?entityGroupId cim:classes ?classId ; rdfs:label ?entityGroup ." +
-                        "    ?classId rdfs:label ?developerName ." +
-                        "    ?classId rdfs:comment ?description ." +
-                        "    ?classId sh:and*/sh:property ?propertyShape ." +
-                        "    ?propertyShape sh:path ?propertyId ." +
-                        "    ?propertyId rdfs:label ?propertyDeveloperName ." +
-                        "    ?propertyId rdfs:comment ?propertyDescription ." +
-                        "    OPTIONAL {" +
-                        "      ?propertyShape sh:datatype ?propertyDatatype ." +
-                        "    }" +
-                        "    OPTIONAL {" +
-                        "      ?propertyShape sh:node ?referencedClass ." +
-                        "      ?referencedClass rdfs:label ?referencedName ." +
-                        "    }" +
-                        "    OPTIONAL {" +
-                        "      ?propertyShape sh:minCount ?minCount ." +
-                        "    }" +
-                        "    FILTER (?propertyDatatype != cim:id || BOUND(?referencedName)) ." +
-                        "} ORDER BY ?classId ?propertyId";
-
-        Query query = QueryFactory.create(queryString) ;
-
-        try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-            ResultSet results = qexec.execSelect() ;
-            while (results.hasNext()) {
-                QuerySolution soln = results.nextSolution();
-                Literal eg = soln.getLiteral("entityGroup");
-                Literal kn = soln.getLiteral("developerName");
-                Literal pn = soln.getLiteral("propertyDeveloperName");
-                Literal kd = soln.getLiteral("description");
-                Resource pdt = soln.getResource("propertyDatatype");
-                Literal pref = soln.getLiteral("referencedName");
-                Literal required = soln.getLiteral("required");
-
-                writer.write("  developerName: " + kn.getString() + "\n");
-                writer.write("  description: " + kd.getString() + "\n");
-                writer.write("  entityGroup: " + eg.getString() + "\n");
-
-                if (pdt != null) {
-                    writer.write("  propertyDeveloperName: " + pn.getString() + "\n");
-                    writer.write("  propertyDatatype: " + pdt.getURI() + "\n");
-                }
-                if (pref != null) {
-                    writer.write("  propertyDeveloperName: " + pref.getString().replace(" ", "") + "Id" + "\n");
-                    writer.write("  propertyDatatype: " + "URI reference" + "\n");
-                    writer.write("  referencedRelationshipName: " + pn.getString() + "\n");
-                    writer.write("  referencedEntity: " + pref.getString() + "\n");
-                }
+    /**
+     * Runs an operation reading the model.
+     * Models that are views over a transactional dataset, like TDB2 databases or CIMDataset union models, can only be
+     * read safely inside a transaction, so a read transaction is started unless one is already in progress.
+     * Other models are read inside a read critical section, so any number of reports can run concurrently over the same
+     * model while writers using the model lock wait for them to finish.
+     * @param action
+     * @return
+     */
+    protected <T> T read(Supplier<T> action) {
+        Graph graph = model.getGraph();
+        if (graph instanceof GraphView) {
+            DatasetGraph dataset = ((GraphView) graph).getDataset();
+            if (dataset.supportsTransactions() && !dataset.isInTransaction()) {
+                return Txn.calculateRead(dataset, action);
+            }
+        }
+        model.enterCriticalSection(Lock.READ);
+        try {
+            return action.get();
+        } finally {
+            model.leaveCriticalSection();
+        }
+    }
 
-                writer.write("  required: " + required.getBoolean() + "\n");
+    // Receives the solutions of a query, usually writing them to the output of a report
+    protected interface SolutionHandler {
+        void handle(QuerySolution soln) throws IOException;
+    }
 
-                writer.write("----\n");
-            }
+    /**
+     * Executes a prepared query over the model inside {@link #read(Supplier)}, passing every solution to the handler
+     * as soon as it is produced, so results are never accumulated in memory.
+     * @param query
+     * @param bindings initial values for variables in the query, null if there are none
+     * @param handler
+     * @throws IOException if the handler fails writing a solution, the query execution is stopped
+     */
+    protected void select(PreparedQuery query, QuerySolution bindings, SolutionHandler handler) throws IOException {
+        try {
+            read(() -> {
+                query.select(model, bindings, (soln) -> {
+                    try {
+                        handler.handle(soln);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+    }
 
-        return writer.toString();
+    /**
+     * Runs any SPARQL query over the model inside {@link #read(Supplier)}, streaming the results as TSV for SELECT and
+     * ASK queries, or as Turtle for CONSTRUCT and DESCRIBE queries
+     * @param queryString query, the common prefixes are added to it
+     * @param out
+     * @throws IOException
+     * @throws org.apache.jena.query.QueryParseException if the query is not valid
+     */
+    public void sparql(String queryString, OutputStream out) throws IOException {
+        Query query = QueryFactory.create(PREFIXES + queryString);
+        try {
+            read(() -> {
+                try (QueryExecution execution = QueryExecutionFactory.create(query, model)) {
+                    if (query.isSelectType()) {
+                        ResultSetFormatter.outputAsTSV(out, execution.execSelect());
+                    } else if (query.isAskType()) {
+                        ResultSetFormatter.outputAsTSV(out, execution.execAsk());
+                    } else {
+                        Iterator<Triple> triples = query.isConstructType() ?
+                                execution.execConstructTriples() : execution.execDescribeTriples();
+                        StreamRDF writer = StreamRDFWriter.getWriterStream(out, RDFFormat.TURTLE_BLOCKS);
+                        writer.start();
+                        query.getPrefixMapping().getNsPrefixMap().forEach(writer::prefix);
+                        triples.forEachRemaining(writer::triple);
+                        writer.finish();
+                    }
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
+    // A report written to an output
+    public interface Report {
+        void write(Writer writer) throws IOException;
+    }
 
+    // Collects the output of a report in a String
+    protected static String asString(Report report) {
+        StringWriter writer = new StringWriter();
+        try {
+            report.write(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not thrown by StringWriter
+        }
+        return writer.toString();
+    }
 
     /**
-     * Lists all the types of elements in the model
-     * @return
+     * Writes every report to its own <code>&lt;name&gt;.tsv</code> file in a directory, running all of them at once
+     * in the executor
+     * @param reports reports by name
+     * @param directory
+     * @param executor
+     * @return the files written, by report name
+     * @throws IOException if any of the reports could not be written, after all the others have finished
      */
-    public String listModelElementTypes() {
-        StringWriter writer = new StringWriter();
-        String queryString =
-                PREFIXES +
-                        "SELECT DISTINCT ?type { " +
-                        "    ?s a ?type ." +
-                        "} ORDER BY ?type";
-
-        Query query = QueryFactory.create(queryString) ;
-
-        try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-            ResultSet results = qexec.execSelect() ;
-            String lastClass = null;
-            while (results.hasNext()) {
-                QuerySolution soln = results.nextSolution();
-                Resource t = soln.getResource("type");
-
-                writer.write("  - " + t + "\n");
+    protected static Map<String, Path> export(Map<String, Report> reports, Path directory, ExecutorService executor) throws IOException {
+        Files.createDirectories(directory);
+        Map<String, Path> files = new LinkedHashMap<>();
+        Map<String, Future<?>> exports = new LinkedHashMap<>();
+        reports.forEach((name, report) -> {
+            Path file = directory.resolve(name + ".tsv");
+            files.put(name, file);
+            exports.put(name, executor.submit(() -> {
+                try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                    report.write(writer);
+                }
+                return null;
+            }));
+        });
+
+        IOException failure = null;
+        for (Map.Entry<String, Future<?>> export : exports.entrySet()) {
+            try {
+                export.getValue().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exports.values().forEach(f -> f.cancel(true));
+                throw new InterruptedIOException("Interrupted exporting " + export.getKey());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = new IOException("Failed to export reports");
+                }
+                IOException error = new IOException("Error exporting " + export.getKey() + ": " + e.getCause().getMessage(), e.getCause());
+                failure.addSuppressed(error);
             }
         }
-        return writer.toString();
+        if (failure != null) {
+            throw failure;
+        }
+        return files;
     }
 
+    private static final PreparedQuery COUNTS_QUERY = new PreparedQuery(
+            PREFIXES +
+                    "SELECT (COUNT(?modelElement) AS ?total) { " +
+                    "    ?modelElement a ?modelElementType ." +
+                    "}");
 
     /**
-     * Lists cardinalities in relationships for all entities in the model
-     * @return
+     * Counts elements in the model
+     * @param modelElementType URI for the type of element being counted
      */
-    public String cardinalities() {
-        StringWriter writer = new StringWriter();
+    public int countsQuery(String modelElementType) {
+        String type = COUNTS_QUERY.expandPrefix(modelElementType);
+        ResultCache cache = this.cache;
+        long version = cache == null ? 0 : cache.version();
+        Object cached = cache == null ? null : cache.get("countsQuery " + type);
+        if (cached != null) {
+            return (Integer) cached;
+        }
 
-        // collect all the classes
-        ArrayList<String> classes = new ArrayList<>();
+        QuerySolutionMap bindings = new QuerySolutionMap();
+        bindings.add("modelElementType", model.createResource(type));
+
+        int[] total = new int[1];
+        read(() -> {
+            COUNTS_QUERY.select(model, bindings, (soln) -> {
+                Literal count = soln.getLiteral("total");
+                total[0] = count.getInt();
+            });
+            return null;
+        });
+        if (cache != null) {
+            cache.put("countsQuery " + type, total[0], version);
+        }
+        return total[0];
+    }
 
-        String queryString =
-                PREFIXES +
-                        "SELECT * { " +
-                        "    ?class a rdfs:Class ." +
-                        "}";
+    private static final String LIST_CLASSES =
+            PREFIXES +
+                    "SELECT * { " +
+                    "    ?class rdfs:label ?className ." +
+                    "    ?class rdfs:comment ?classDescription ." +
+                    "    ?class sh:and*/sh:property/sh:path ?property ." +
+                    "    ?property rdfs:comment ?propertyDescription ." +
+                    "    ?property rdfs:label ?propertyName ." +
+                    "} ORDER BY ?class ?property";
+    private static final PreparedQuery LIST_CLASSES_QUERY = new PreparedQuery(LIST_CLASSES);
+    private static final PreparedQuery LIST_CLASSES_CLOSURE_QUERY = new PreparedQuery(withShapeClosure(LIST_CLASSES));
 
-        Query query = QueryFactory.create(queryString) ;
+    public String listClasses() {
+        return asString(this::listClasses);
+    }
 
-        try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-            ResultSet results = qexec.execSelect() ;
+    /**
+     * Writes the description of all classes and their properties
+     * @param writer output for the report, rows are written as the query results are consumed
+     * @throws IOException
+     */
+    public void listClasses(Writer writer) throws IOException {
+        cached("listClasses", writer, this::writeListClasses);
+    }
 
-            while (results.hasNext()) {
-                QuerySolution soln = results.nextSolution();
-                Resource k = soln.getResource("class");
-                classes.add(k.getURI());
+    private void writeListClasses(Writer writer) throws IOException {
+        String[] last = new String[2]; // last class and property written
+
+        select(shapeClosure ? LIST_CLASSES_CLOSURE_QUERY : LIST_CLASSES_QUERY, null, (soln) -> {
+            Resource k = soln.getResource("class");
+            Resource p = soln.getResource("property");
+            Literal kn = soln.getLiteral("className");
+            Literal pn = soln.getLiteral("propertyName");
+            Literal kd = soln.getLiteral("classDescription");
+            Literal pd = soln.getLiteral("propertyDescription");
+            if (k.getURI() != last[0]) {
+                writer.write(" => Class: " + kn.getString() + "[" + k.getURI() + "]\n");
+                writer.write("       " + kd.getString() + "\n");
+                writer.write("    Properties: \n");
+                last[0] = k.getURI();
             }
-        }
+            if (p.getURI() != last[1]) {
+                writer.write("    - " + pn.getString() + "[" + p.getURI() + "] \n");
+                writer.write("         " + pd.getString() + "\n");
+                last[1] = p.getURI();
+            }
+        });
+    }
 
-        for (String classId : classes) {
-            Set<String> linkedToClasses = new HashSet<>();
-            Set<String> linkedFromClasses = new HashSet<>();
 
-            queryString =
-                    PREFIXES +
-                            "SELECT * { " +
-                            "    <"+ classId + "> a rdfs:Class ; " +
-                            "                     sh:and*/sh:property/sh:node ?targetClass ." +
-                            "}";
+    private static final String RECONSTRUCT_TABLE =
+            PREFIXES +
+                     "SELECT DISTINCT " +
+                    "  ?developerName ?description ?entityGroup ?propertyDeveloperName ?propertyDatatype ?referencedName  " +
+                    "  (IF(BOUND(?minCount) && xsd:integer(?minCount) > 0, TRUE, FALSE) AS ?required)" +
+                    " {" +
+                    "    ?entityGroupId cim:classes ?classId ; rdfs:label ?entityGroup ." +
+                    "    ?classId rdfs:label ?developerName ." +
+                    "    ?classId rdfs:comment ?description ." +
+                    "    ?classId sh:and*/sh:property ?propertyShape ." +
+                    "    ?propertyShape sh:path ?propertyId ." +
+                    "    ?propertyId rdfs:label ?propertyDeveloperName ." +
+                    "    ?propertyId rdfs:comment ?propertyDescription ." +
+                    "    OPTIONAL {" +
+                    "      ?propertyShape sh:datatype ?propertyDatatype ." +
+                    "    }" +
+                    "    OPTIONAL {" +
+                    "      ?propertyShape sh:node ?referencedClass ." +
+                    "      ?referencedClass rdfs:label ?referencedName ." +
+                    "    }" +
+                    "    OPTIONAL {" +
+                    "      ?propertyShape sh:minCount ?minCount ." +
+                    "    }" +
+                    "    FILTER (?propertyDatatype != cim:id || BOUND(?referencedName)) ." +
+                    "} ORDER BY ?classId ?propertyId";
+    private static final PreparedQuery RECONSTRUCT_TABLE_QUERY = new PreparedQuery(RECONSTRUCT_TABLE);
+    private static final PreparedQuery RECONSTRUCT_TABLE_CLOSURE_QUERY = new PreparedQuery(withShapeClosure(RECONSTRUCT_TABLE));
 
-            query = QueryFactory.create(queryString) ;
+    public String reconstructTable() {
+        return asString(this::reconstructTable);
+    }
 
-            try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-                ResultSet results = qexec.execSelect() ;
+    /**
+     * Writes the reconstructed table of classes and properties
+     * @param writer output for the report, rows are written as the query results are consumed
+     * @throws IOException
+     */
+    public void reconstructTable(Writer writer) throws IOException {
+        cached("reconstructTable", writer, this::writeReconstructTable);
+    }
 
-                while (results.hasNext()) {
-                    QuerySolution soln = results.nextSolution();
-                    Resource k = soln.getResource("targetClass");
-                    linkedToClasses.add(k.getURI());
-                }
+    private void writeReconstructTable(Writer writer) throws IOException {
+        select(shapeClosure ? RECONSTRUCT_TABLE_CLOSURE_QUERY : RECONSTRUCT_TABLE_QUERY, null, (soln) -> {
+            Literal eg = soln.getLiteral("entityGroup");
+            Literal kn = soln.getLiteral("developerName");
+            Literal pn = soln.getLiteral("propertyDeveloperName");
+            Literal kd = soln.getLiteral("description");
+            Resource pdt = soln.getResource("propertyDatatype");
+            Literal pref = soln.getLiteral("referencedName");
+            Literal required = soln.getLiteral("required");
+
+            writer.write("  developerName: " + kn.getString() + "\n");
+            writer.write("  description: " + kd.getString() + "\n");
+            writer.write("  entityGroup: " + eg.getString() + "\n");
+
+            if (pdt != null) {
+                writer.write("  propertyDeveloperName: " + pn.getString() + "\n");
+                writer.write("  propertyDatatype: " + pdt.getURI() + "\n");
+            }
+            if (pref != null) {
+                writer.write("  propertyDeveloperName: " + pref.getString().replace(" ", "") + "Id" + "\n");
+                writer.write("  propertyDatatype: " + "URI reference" + "\n");
+                writer.write("  referencedRelationshipName: " + pn.getString() + "\n");
+                writer.write("  referencedEntity: " + pref.getString() + "\n");
             }
 
-            queryString =
-                    PREFIXES +
-                            "SELECT * { " +
-                            "    ?sourceClass a rdfs:Class;" +
-                            "                 sh:and*/sh:property/sh:node <" + classId + "> ." +
-                            "}";
+            writer.write("  required: " + required.getBoolean() + "\n");
 
-            query = QueryFactory.create(queryString) ;
+            writer.write("----\n");
+        });
+    }
 
-            try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-                ResultSet results = qexec.execSelect() ;
 
-                while (results.hasNext()) {
-                    QuerySolution soln = results.nextSolution();
-                    Resource k = soln.getResource("sourceClass");
-                    linkedFromClasses.add(k.getURI());
-                }
-            }
+    /**
+     * Classes of the model with the properties of their instances, one object per class and entity group, see
+     * {@link ReconstructedClass#build(Graph)}
+     * @return
+     */
+    public List<ReconstructedClass> reconstructClasses() {
+        return read(() -> ReconstructedClass.build(model.getGraph()));
+    }
+
+
+    private static final PreparedQuery MODEL_ELEMENT_TYPES_QUERY = new PreparedQuery(
+            PREFIXES +
+                    "SELECT DISTINCT ?type { " +
+                    "    ?s a ?type ." +
+                    "} ORDER BY ?type");
+
+    /**
+     * Lists all the types of elements in the model
+     * @return
+     */
+    public String listModelElementTypes() {
+        return asString(this::listModelElementTypes);
+    }
+
+    /**
+     * Writes all the types of elements in the model
+     * @param writer output for the report, rows are written as the query results are consumed
+     * @throws IOException
+     */
+    public void listModelElementTypes(Writer writer) throws IOException {
+        cached("listModelElementTypes", writer, this::writeModelElementTypes);
+    }
+
+    private void writeModelElementTypes(Writer writer) throws IOException {
+        select(MODEL_ELEMENT_TYPES_QUERY, null, (soln) -> {
+            Resource t = soln.getResource("type");
+
+            writer.write("  - " + t + "\n");
+        });
+    }
+
+
+    /**
+     * Builds the index of the links between the classes of the model
+     * @return
+     */
+    public ClassRelationships relationships() {
+        return read(() -> ClassRelationships.build(model.getGraph()));
+    }
+
+    /**
+     * Builds the typed index of the metamodel, to answer the structural reports without SPARQL
+     * @return
+     */
+    public MetamodelIndex metamodelIndex() {
+        return read(() -> MetamodelIndex.build(model.getGraph()));
+    }
 
-            Set<String> oneToOne = new HashSet<>(linkedToClasses);
-            oneToOne.retainAll(linkedFromClasses);
+    /**
+     * Lists cardinalities in relationships for all entities in the model
+     * @return
+     */
+    public String cardinalities() {
+        return asString(this::cardinalities);
+    }
+
+    /**
+     * Writes the cardinalities in relationships for all entities in the model
+     * @param writer output for the report
+     * @throws IOException
+     */
+    public void cardinalities(Writer writer) throws IOException {
+        cached("cardinalities", writer, this::writeCardinalities);
+    }
 
-            Set<String> oneToMany = new HashSet<>(linkedFromClasses);
-            oneToMany.removeAll(linkedToClasses);
+    private void writeCardinalities(Writer writer) throws IOException {
+        ClassRelationships relationships = relationships();
 
+        for (String classId : relationships.getClasses()) {
             writer.append("* Class " + classId + "\n");
             writer.append("  1:1\n");
-            for (String targetClassId : oneToOne) {
+            for (String targetClassId : relationships.oneToOne(classId)) {
                 writer.append("   - " + targetClassId + "\n");
             }
             writer.append("  1:n\n");
-            for (String targetClassId : oneToMany) {
+            for (String targetClassId : relationships.oneToMany(classId)) {
                 writer.append("   - " + targetClassId + "\n");
             }
         }
-
-        return writer.toString();
-
     }
 
 }
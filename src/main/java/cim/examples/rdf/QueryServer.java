@@ -0,0 +1,426 @@
+package cim.examples.rdf;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local HTTP server running SPARQL queries and the named reports over a model loaded once, so many tools can share
+ * the same model instead of loading their own copy.
+ * <ul>
+ *     <li><code>GET|POST /sparql?query=...</code>: SELECT and ASK results as SPARQL JSON, or TSV with
+ *     <code>format=tsv</code> or <code>Accept: text/tab-separated-values</code>. CONSTRUCT and DESCRIBE results as
+ *     Turtle, or N-Triples with <code>format=nt</code>. POST accepts form parameters or an
+ *     <code>application/sparql-query</code> body.</li>
+ *     <li><code>GET /reports</code>: names of the reports, as JSON</li>
+ *     <li><code>GET /reports/NAME</code>: a report as TSV, or as JSON arrays of cells with <code>format=json</code></li>
+ *     <li><code>GET /counts?type=CURIE</code>: number of elements of a type, as JSON</li>
+ * </ul>
+ * Requests are handled by a fixed pool of workers, reading the model concurrently through {@link Queries#read}.
+ * Responses are streamed as the results are produced, without buffering them. SPARQL queries running longer than
+ * {@link #setQueryTimeout(long)} are cancelled.
+ * The server only listens on the loopback interface.
+ */
+public class QueryServer {
+
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String SPARQL_JSON = "application/sparql-results+json; charset=utf-8";
+    private static final String TSV = "text/tab-separated-values; charset=utf-8";
+    private static final String TURTLE = "text/turtle; charset=utf-8";
+    private static final String NTRIPLES = "application/n-triples; charset=utf-8";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long DEFAULT_QUERY_TIMEOUT = 60_000;
+
+    private final RegenerateQueries queries;
+    private final Map<String, Queries.Report> reports;
+    private HttpServer server;
+    private ExecutorService workers;
+    private volatile long queryTimeout = defaultQueryTimeout();
+
+    public QueryServer(RegenerateQueries queries) {
+        this.queries = queries;
+        this.reports = queries.reports();
+    }
+
+    /**
+     * Time limit of the SPARQL queries, after which they are cancelled and answered with a 503 status, or cut short if
+     * their results are already being streamed.
+     * Defaults to the value of the <code>cim.queryTimeout</code> system property, or 60000.
+     * @param queryTimeout limit in milliseconds, 0 or less for no limit
+     */
+    public void setQueryTimeout(long queryTimeout) {
+        this.queryTimeout = queryTimeout;
+    }
+
+    /**
+     * Starts listening
+     * @param port port on the loopback interface, 0 for any free port
+     * @param threads number of requests handled at the same time
+     * @return the address the server listens on
+     * @throws IOException
+     */
+    public synchronized InetSocketAddress start(int port, int threads) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        workers = Executors.newFixedThreadPool(threads);
+        server.setExecutor(workers);
+        server.createContext("/sparql", exchange -> handle(exchange, this::sparql));
+        server.createContext("/reports", exchange -> handle(exchange, this::report));
+        server.createContext("/counts", exchange -> handle(exchange, this::counts));
+        server.start();
+        return server.getAddress();
+    }
+
+    // Stops the server, waiting up to delay seconds for the requests in progress
+    public synchronized void stop(int delay) {
+        if (server != null) {
+            server.stop(delay);
+            workers.shutdownNow();
+            server = null;
+        }
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange, Map<String, String> parameters) throws IOException;
+    }
+
+    // Error sent as the status of a response
+    private static class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("POST")) {
+                throw new HttpError(405, "Method not allowed: " + method);
+            }
+            handler.handle(exchange, parameters(exchange));
+        } catch (HttpError e) {
+            sendError(exchange, e.status, e.getMessage(), e);
+        } catch (QueryParseException e) {
+            sendError(exchange, 400, e.getMessage(), e);
+        } catch (QueryCancelledException e) {
+            sendError(exchange, 503, "Query timed out", e);
+        } catch (IOException | RuntimeException e) {
+            sendError(exchange, 500, e.toString(), e);
+        }
+        exchange.close();
+    }
+
+    /**
+     * Sends an error status, or aborts the response if it is already being streamed: the exception is rethrown without
+     * closing the exchange, so the server drops the connection before the last chunk and the client sees a truncated
+     * response instead of a complete one
+     */
+    private static void sendError(HttpExchange exchange, int status, String message, Exception cause) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (IOException e) {
+            // client gone
+        }
+    }
+
+    // Starts a streamed response, closed only once it is complete since closing it ends the body, see sendError
+    private static OutputStream stream(HttpExchange exchange, String contentType) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, 0);
+        return new BufferedOutputStream(exchange.getResponseBody(), BUFFER_SIZE);
+    }
+
+    private void sparql(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+        String queryString = parameters.get("query");
+        if (queryString == null) {
+            throw new HttpError(400, "Missing query parameter");
+        }
+        Query query = QueryFactory.create(queryString);
+        String format = format(exchange, parameters);
+        long timeout = queryTimeout;
+        try {
+            queries.read(() -> {
+                try (QueryExecution execution = QueryExecutionFactory.create(query, queries.model)) {
+                    if (timeout > 0) {
+                        execution.setTimeout(timeout, TimeUnit.MILLISECONDS);
+                    }
+                    // the first result is computed before the response starts, so a query timing out until then
+                    // gets an error status instead of an empty response
+                    if (query.isSelectType()) {
+                        boolean tsv = format.equals("tsv");
+                        ResultSet results = execution.execSelect();
+                        results.hasNext();
+                        OutputStream out = stream(exchange, tsv ? TSV : SPARQL_JSON);
+                        if (tsv) {
+                            ResultSetFormatter.outputAsTSV(out, results);
+                        } else {
+                            ResultSetFormatter.outputAsJSON(out, results);
+                        }
+                        out.close();
+                    } else if (query.isAskType()) {
+                        boolean tsv = format.equals("tsv");
+                        boolean result = execution.execAsk();
+                        OutputStream out = stream(exchange, tsv ? TSV : SPARQL_JSON);
+                        if (tsv) {
+                            ResultSetFormatter.outputAsTSV(out, result);
+                        } else {
+                            ResultSetFormatter.outputAsJSON(out, result);
+                        }
+                        out.close();
+                    } else {
+                        boolean nt = format.equals("nt");
+                        Iterator<Triple> triples = query.isConstructType() ?
+                                execution.execConstructTriples() : execution.execDescribeTriples();
+                        triples.hasNext();
+                        OutputStream out = stream(exchange, nt ? NTRIPLES : TURTLE);
+                        StreamRDF writer = StreamRDFWriter.getWriterStream(out, nt ? RDFFormat.NTRIPLES : RDFFormat.TURTLE_BLOCKS);
+                        writer.start();
+                        query.getPrefixMapping().getNsPrefixMap().forEach(writer::prefix);
+                        triples.forEachRemaining(writer::triple);
+                        writer.finish();
+                        out.close();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void report(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String name = path.replaceFirst("^/reports/?", "");
+        if (name.isEmpty()) {
+            Writer writer = writer(stream(exchange, JSON));
+            writer.write("[");
+            int i = 0;
+            for (String report : reports.keySet()) {
+                writer.write((i++ > 0 ? ", " : "") + jsonString(report));
+            }
+            writer.write("]\n");
+            writer.close();
+            return;
+        }
+        Queries.Report report = reports.get(name);
+        if (report == null) {
+            throw new HttpError(404, "Unknown report: " + name);
+        }
+        Writer writer = format(exchange, parameters).equals("json") ?
+                new JsonRowsWriter(writer(stream(exchange, JSON))) : writer(stream(exchange, TSV));
+        report.write(writer);
+        writer.close();
+    }
+
+    private void counts(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+        String type = parameters.get("type");
+        if (type == null) {
+            throw new HttpError(400, "Missing type parameter");
+        }
+        int total = queries.countsQuery(type);
+        Writer writer = writer(stream(exchange, JSON));
+        writer.write("{\"type\": " + jsonString(type) + ", \"total\": " + total + "}\n");
+        writer.close();
+    }
+
+    /**
+     * Format of the response: the <code>format</code> parameter, or else the preferred type in the Accept header
+     * @return json, tsv, nt or ttl
+     */
+    private static String format(HttpExchange exchange, Map<String, String> parameters) {
+        String format = parameters.get("format");
+        if (format != null) {
+            return format.toLowerCase();
+        }
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        if (accept != null) {
+            if (accept.contains("text/tab-separated-values")) {
+                return "tsv";
+            }
+            if (accept.contains("application/n-triples")) {
+                return "nt";
+            }
+            if (accept.contains("json")) {
+                return "json";
+            }
+        }
+        return "";
+    }
+
+    // Parameters from the query string, and from the body of POST requests
+    private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        parse(exchange.getRequestURI().getRawQuery(), parameters);
+        if (exchange.getRequestMethod().equals("POST")) {
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            String body = read(exchange.getRequestBody());
+            if (contentType != null && contentType.startsWith("application/sparql-query")) {
+                parameters.put("query", body);
+            } else {
+                parse(body, parameters);
+            }
+        }
+        return parameters;
+    }
+
+    private static void parse(String encoded, Map<String, String> parameters) throws UnsupportedEncodingException {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Writer writer(OutputStream out) {
+        return new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    }
+
+    private static long defaultQueryTimeout() {
+        String timeout = System.getProperty("cim.queryTimeout");
+        return timeout == null || timeout.isEmpty() ? DEFAULT_QUERY_TIMEOUT : Long.parseLong(timeout);
+    }
+
+    static String jsonString(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    /**
+     * Turns the lines written by a report into a JSON array with an array of cells for every line, split at tabs.
+     * Every line is written as soon as it is complete.
+     */
+    static class JsonRowsWriter extends Writer {
+        private final Writer out;
+        private final StringBuilder line = new StringBuilder();
+        private boolean first = true;
+
+        JsonRowsWriter(Writer out) throws IOException {
+            this.out = out;
+            out.write("[");
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                if (buffer[i] == '\n') {
+                    writeLine();
+                } else {
+                    line.append(buffer[i]);
+                }
+            }
+        }
+
+        private void writeLine() throws IOException {
+            out.write(first ? "\n[" : ",\n[");
+            first = false;
+            String[] cells = line.toString().split("\t", -1);
+            // reports end the cells of their rows with a tab, which does not start another cell
+            int count = cells.length > 1 && cells[cells.length - 1].isEmpty() ? cells.length - 1 : cells.length;
+            for (int i = 0; i < count; i++) {
+                out.write((i > 0 ? ", " : "") + jsonString(cells[i]));
+            }
+            out.write("]");
+            line.setLength(0);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (line.length() > 0) {
+                writeLine();
+            }
+            out.write("\n]\n");
+            out.close();
+        }
+    }
+}
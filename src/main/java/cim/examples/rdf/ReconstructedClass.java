@@ -0,0 +1,213 @@
+package cim.examples.rdf;
+
+import cim.loader.ShapeGraph;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.vocabulary.RDFS;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A class of the model with the properties its instances can have, as in the table of
+ * {@link Queries#reconstructTable()}, but with the property shapes found the same way as the
+ * {@link cim.loader.ShapeValidator}: the shapes of the class and of its superclasses, the shapes targeting them with
+ * <code>sh:targetClass</code>, and the members of their <code>sh:and</code> lists, recursively.
+ */
+public class ReconstructedClass {
+
+    private static final Node CIM_CLASSES = NodeFactory.createURI(ShapeGraph.CIM + "classes");
+
+    // A property of the class, plain or a reference to another class
+    public static class Property {
+        private final String developerName;
+        private final String datatype;
+        private final String referencedEntity;
+        private final boolean required;
+        private final int maxCount;
+
+        public Property(String developerName, String datatype, String referencedEntity, boolean required, int maxCount) {
+            this.developerName = developerName;
+            this.datatype = datatype;
+            this.referencedEntity = referencedEntity;
+            this.required = required;
+            this.maxCount = maxCount;
+        }
+
+        public String getDeveloperName() {
+            return developerName;
+        }
+
+        // URI of the datatype, null for references
+        public String getDatatype() {
+            return datatype;
+        }
+
+        // Developer name of the referenced class, null if the property is not a reference
+        public String getReferencedEntity() {
+            return referencedEntity;
+        }
+
+        public boolean isReference() {
+            return referencedEntity != null;
+        }
+
+        public boolean isRequired() {
+            return required;
+        }
+
+        // sh:maxCount of the property, -1 if it is unbounded
+        public int getMaxCount() {
+            return maxCount;
+        }
+
+        // Whether the property can have more than one value
+        public boolean isMultiValued() {
+            return maxCount < 0 || maxCount > 1;
+        }
+    }
+
+    private final String developerName;
+    private final String description;
+    private final String entityGroup;
+    private final List<Property> properties;
+
+    public ReconstructedClass(String developerName, String description, String entityGroup, List<Property> properties) {
+        this.developerName = developerName;
+        this.description = description;
+        this.entityGroup = entityGroup;
+        this.properties = Collections.unmodifiableList(properties);
+    }
+
+    public String getDeveloperName() {
+        return developerName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getEntityGroup() {
+        return entityGroup;
+    }
+
+    // Properties of the class, including the ones of its superclasses and the ones inherited through sh:and lists,
+    // ordered by the URI of their path
+    public List<Property> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Reconstructs the classes of the entity groups of a graph, one object for every class and entity group, ordered
+     * by the URI of the class. Property shapes with the same path are merged: the property is required if any of them
+     * requires it, and its maximum count is the lowest of theirs. When paths of a class share a developer name, the
+     * first in the order of their URIs keeps it and the others are named by their compact URI.
+     * @param graph
+     * @return
+     */
+    public static List<ReconstructedClass> build(Graph graph) {
+        Map<Node, List<Node>> targets = ShapeGraph.targets(graph);
+        List<Triple> memberships = new ArrayList<>();
+        ShapeGraph.forEach(graph, Node.ANY, CIM_CLASSES, Node.ANY, (t) -> {
+            if (t.getObject().isURI()) {
+                memberships.add(t);
+            }
+        });
+        memberships.sort(Comparator.comparing((Triple t) -> t.getObject().getURI())
+                .thenComparing((t) -> label(graph, t.getSubject())));
+
+        Map<Node, List<Property>> properties = new HashMap<>();
+        List<ReconstructedClass> classes = new ArrayList<>();
+        for (Triple membership : memberships) {
+            Node type = membership.getObject();
+            classes.add(new ReconstructedClass(
+                    label(graph, type),
+                    text(graph, type, RDFS.comment.asNode()),
+                    label(graph, membership.getSubject()),
+                    properties.computeIfAbsent(type, (c) -> properties(graph, c, targets))));
+        }
+        return classes;
+    }
+
+    private static List<Property> properties(Graph graph, Node type, Map<Node, List<Node>> targets) {
+        Map<String, Property> byPath = new TreeMap<>();
+        for (Node shape : ShapeGraph.propertyShapes(graph, ShapeGraph.classShapes(graph, type, targets))) {
+            Node path = ShapeGraph.single(graph, shape, ShapeGraph.SH_PATH);
+            if (path == null || !path.isURI()) {
+                continue;
+            }
+            Node datatype = ShapeGraph.single(graph, shape, ShapeGraph.SH_DATATYPE);
+            Node node = ShapeGraph.single(graph, shape, ShapeGraph.SH_NODE);
+            String referenced = node != null && node.isURI() ? label(graph, node) : null;
+            boolean required = count(ShapeGraph.single(graph, shape, ShapeGraph.SH_MIN_COUNT), 0) > 0;
+            int maxCount = count(ShapeGraph.single(graph, shape, ShapeGraph.SH_MAX_COUNT), -1);
+
+            String datatypeUri = referenced == null && datatype != null && datatype.isURI() ? datatype.getURI() : null;
+
+            Property previous = byPath.get(path.getURI());
+            if (previous != null) {
+                // the first shape with a datatype or a node decides the type of the property
+                if (previous.isReference() || previous.getDatatype() != null) {
+                    referenced = previous.getReferencedEntity();
+                    datatypeUri = previous.getDatatype();
+                }
+                required |= previous.isRequired();
+                if (maxCount < 0 || previous.getMaxCount() >= 0 && previous.getMaxCount() < maxCount) {
+                    maxCount = previous.getMaxCount();
+                }
+            }
+            byPath.put(path.getURI(), new Property(label(graph, path), datatypeUri, referenced, required, maxCount));
+        }
+        // two paths with the same developer name would be the same key in the records, the later ones are keyed by
+        // their compact URI, as the validator also accepts
+        Set<String> names = new HashSet<>();
+        List<Property> properties = new ArrayList<>();
+        for (Map.Entry<String, Property> entry : byPath.entrySet()) {
+            Property property = entry.getValue();
+            if (!names.add(property.getDeveloperName())) {
+                property = new Property(ShapeGraph.PREFIXES.shortForm(entry.getKey()), property.getDatatype(),
+                        property.getReferencedEntity(), property.isRequired(), property.getMaxCount());
+                names.add(property.getDeveloperName());
+            }
+            properties.add(property);
+        }
+        return properties;
+    }
+
+    private static int count(Node literal, int missing) {
+        if (literal == null || !literal.isLiteral() || !(literal.getLiteralValue() instanceof Number)) {
+            return missing;
+        }
+        return ((Number) literal.getLiteralValue()).intValue();
+    }
+
+    // rdfs:label of a node, or the local name of its URI
+    private static String label(Graph graph, Node node) {
+        String label = text(graph, node, RDFS.label.asNode());
+        if (!label.isEmpty() || !node.isURI()) {
+            return label;
+        }
+        String uri = node.getURI();
+        return uri.substring(Math.max(uri.lastIndexOf('/'), uri.lastIndexOf('#')) + 1);
+    }
+
+    // First literal value of a property, empty if there is none
+    private static String text(Graph graph, Node node, Node predicate) {
+        String[] text = {""};
+        ShapeGraph.forEach(graph, node, predicate, Node.ANY, (t) -> {
+            if (text[0].isEmpty() && t.getObject().isLiteral()) {
+                text[0] = t.getObject().getLiteralLexicalForm();
+            }
+        });
+        return text[0];
+    }
+}
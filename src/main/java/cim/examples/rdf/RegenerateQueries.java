@@ -5,8 +5,14 @@ import org.apache.jena.rdf.model.Literal;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.Resource;
 
-import java.io.StringWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 public class RegenerateQueries extends Queries {
 
@@ -16,304 +22,353 @@ public class RegenerateQueries extends Queries {
         super(model);
     }
 
+    public RegenerateQueries(Model model, boolean shapeClosure) {
+        super(model, shapeClosure);
+    }
+
+    private static final PreparedQuery SUBJECT_AREAS_QUERY = new PreparedQuery(
+            PREFIXES +
+                    "SELECT * { " +
+                    "  ?subjectAreaId a cim:SubjectArea" +
+                    "  OPTIONAL {" +
+                    "    ?subjectAreaId rdfs:label ?subjectAreaName" +
+                    "  }" +
+                    "  OPTIONAL {" +
+                    "    ?subjectAreaId rdfs:comment ?description" +
+                    "  }" +
+                    "} ORDER BY ?subjectAreaId");
+
     public String subjectAreas() {
-        StringWriter writer = new StringWriter();
-        String queryString =
-                PREFIXES +
-                        "SELECT * { " +
-                        "  ?subjectAreaId a cim:SubjectArea" +
-                        "  OPTIONAL {" +
-                        "    ?subjectAreaId rdfs:label ?subjectAreaName" +
-                        "  }" +
-                        "  OPTIONAL {" +
-                        "    ?subjectAreaId rdfs:comment ?description" +
-                        "  }" +
-                        "} ORDER BY ?subjectAreaId";
-
-        Query query = QueryFactory.create(queryString) ;
+        return asString(this::subjectAreas);
+    }
+
+    public void subjectAreas(Writer writer) throws IOException {
+        cached("subjectAreas", writer, this::writeSubjectAreas);
+    }
 
+    private void writeSubjectAreas(Writer writer) throws IOException {
         writer.write("subjectAreaId\tsubjectAreaName\tdescription\n");
+        TsvWriter tsv = new TsvWriter(writer);
+
+        select(SUBJECT_AREAS_QUERY, null, (soln) -> {
+            Resource sa = soln.getResource("subjectAreaId");
+            Literal name = soln.getLiteral("subjectAreaName");
+            Literal description = soln.getLiteral("description");
+
+            tsv.id(sa);
+            tsv.data(name);
+            tsv.data(description);
+            tsv.endRow();
+        });
+        tsv.flush();
+    }
 
-        try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-            ResultSet results = qexec.execSelect() ;
-            while (results.hasNext()) {
-                QuerySolution soln = results.nextSolution();
-                Resource sa = soln.getResource("subjectAreaId");
-                Literal name = soln.getLiteral("subjectAreaName");
-                Literal description = soln.getLiteral("description");
-
-                writer.write(maybeId(sa));
-                writer.write(maybeData(name));
-                writer.write(maybeData(description));
-                writer.write("\n");
-            }
-        }
+    private static final PreparedQuery ENTITY_GROUPS_QUERY = new PreparedQuery(
+            PREFIXES +
+                    "SELECT * { " +
+                    "  ?subjectAreaId cim:entityGroup ?entityGroupId ." +
+                    "   OPTIONAL {" +
+                    "    ?entityGroupId  a ?type ." +
+                    "  } " +
+                    "  OPTIONAL {" +
+                    "    ?entityGroupId rdfs:label ?entityGroupName" +
+                    "  }" +
+                    "  OPTIONAL {" +
+                    "    ?entityGroupId rdfs:comment ?description" +
+                    "  }" +
+                    "  OPTIONAL {" +
+                    "    ?entityGroupId cim:subjectArea ?subjectArea" +
+                    "  }" +
+                    "} ORDER BY ?subjectAreaId");
 
-        return writer.toString();
+    public String entityGroups() {
+        return asString(this::entityGroups);
     }
 
-    public String entityGroups() {
-        StringWriter writer = new StringWriter();
-        String queryString =
-                PREFIXES +
-                        "SELECT * { " +
-                        "  ?subjectAreaId cim:entityGroup ?entityGroupId ." +
-                        "   OPTIONAL {" +
-                        "    ?entityGroupId  a ?type ." +
-                        "  } " +
-                        "  OPTIONAL {" +
-                        "    ?entityGroupId rdfs:label ?entityGroupName" +
-                        "  }" +
-                        "  OPTIONAL {" +
-                        "    ?entityGroupId rdfs:comment ?description" +
-                        "  }" +
-                        "  OPTIONAL {" +
-                        "    ?entityGroupId cim:subjectArea ?subjectArea" +
-                        "  }" +
-                        "} ORDER BY ?subjectAreaId";
-
-        Query query = QueryFactory.create(queryString) ;
+    public void entityGroups(Writer writer) throws IOException {
+        cached("entityGroups", writer, this::writeEntityGroups);
+    }
 
+    private void writeEntityGroups(Writer writer) throws IOException {
         writer.write("subjectAreaId\tentityGroupId\tentityGroupN\ttype\tsubjectArea\tdescription\n");
+        TsvWriter tsv = new TsvWriter(writer);
+
+        select(ENTITY_GROUPS_QUERY, null, (soln) -> {
+            Resource sa = soln.getResource("subjectAreaId");
+            Resource eg = soln.getResource("entityGroupId");
+            Resource type = soln.getResource("type");
+            Literal name = soln.getLiteral("entityGroupName");
+            Literal description = soln.getLiteral("description");
+            Literal subjectArea = soln.getLiteral("subjectArea");
+
+            tsv.id(sa);
+            tsv.id(eg);
+            tsv.data(name);
+            tsv.id(type);
+            tsv.data(subjectArea);
+            tsv.data(description);
+            tsv.endRow();
+        });
+        tsv.flush();
+    }
 
-        try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-            ResultSet results = qexec.execSelect() ;
-            while (results.hasNext()) {
-                QuerySolution soln = results.nextSolution();
-                Resource sa = soln.getResource("subjectAreaId");
-                Resource eg = soln.getResource("entityGroupId");
-                Resource type = soln.getResource("type");
-                Literal name = soln.getLiteral("entityGroupName");
-                Literal description = soln.getLiteral("description");
-                Literal subjectArea = soln.getLiteral("subjectArea");
-
-                writer.write(maybeId(sa));
-                writer.write(maybeId(eg));
-                writer.write(maybeData(name));
-                writer.write(maybeId(type));
-                writer.write(maybeData(subjectArea));
-                writer.write(maybeData(description));
-                writer.write("\n");
-            }
-        }
+    private static final PreparedQuery CLASS_CONCEPTS_QUERY = new PreparedQuery(
+            PREFIXES +
+                    "SELECT * { " +
+                    "  ?subjectAreaId cim:entityGroup ?entityGroupId ." +
+                    "  ?entityGroupId cim:classes ?classId ." +
+                    "  ?classId rdfs:label ?className ;" +
+                    "           rdfs:comment ?description ;" +
+                    "           a ?type ." +
+                    "   OPTIONAL {" +
+                    "    ?classId  rdfs:subClassOf ?subClassOf " +
+                    "  } " +
+                    "} ORDER BY ?subjectAreaId ?entityGroupId ?classId");
 
-        return writer.toString();
+    public String classConcepts() {
+        return asString(this::classConcepts);
     }
 
-    public String classConcepts() {
-        StringWriter writer = new StringWriter();
-        String queryString =
-                PREFIXES +
-                        "SELECT * { " +
-                        "  ?subjectAreaId cim:entityGroup ?entityGroupId ." +
-                        "  ?entityGroupId cim:classes ?classId ." +
-                        "  ?classId rdfs:label ?className ;" +
-                        "           rdfs:comment ?description ;" +
-                        "           a ?type ." +
-                        "   OPTIONAL {" +
-                        "    ?classId  rdfs:subClassOf ?subClassOf " +
-                        "  } " +
-                        "} ORDER BY ?subjectAreaId ?entityGroupId ?classId";
-
-        Query query = QueryFactory.create(queryString) ;
+    public void classConcepts(Writer writer) throws IOException {
+        cached("classConcepts", writer, this::writeClassConcepts);
+    }
 
+    private void writeClassConcepts(Writer writer) throws IOException {
         writer.write("subjectAreaId\tentityGroupId\tclassName\tclassId\ttype\tsubClassOf\tdescription\n");
+        TsvWriter tsv = new TsvWriter(writer);
+
+        select(CLASS_CONCEPTS_QUERY, null, (soln) -> {
+            Resource sa = soln.getResource("subjectAreaId");
+            Resource eg = soln.getResource("entityGroupId");
+            Resource classId = soln.getResource("classId");
+            Resource subClassId = soln.getResource("subClassOf");
+            Resource type = soln.getResource("type");
+            Literal className = soln.getLiteral("className");
+            Literal description = soln.getLiteral("description");
+
+            tsv.id(sa);
+            tsv.id(eg);
+            tsv.id(classId);
+            tsv.data(className);
+            tsv.id(type);
+            tsv.id(subClassId);
+            tsv.data(description);
+            tsv.endRow();
+        });
+        tsv.flush();
+    }
 
-        try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-            ResultSet results = qexec.execSelect() ;
-            while (results.hasNext()) {
-                QuerySolution soln = results.nextSolution();
-                Resource sa = soln.getResource("subjectAreaId");
-                Resource eg = soln.getResource("entityGroupId");
-                Resource classId = soln.getResource("classId");
-                Resource subClassId = soln.getResource("subClassOf");
-                Resource type = soln.getResource("type");
-                Literal className = soln.getLiteral("className");
-                Literal description = soln.getLiteral("description");
-
-                writer.write(maybeId(sa));
-                writer.write(maybeId(eg));
-                writer.write(maybeId(classId));
-                writer.write(maybeData(className));
-                writer.write(maybeId(type));
-                writer.write(maybeId(subClassId));
-                writer.write(maybeData(description));
-                writer.write("\n");
-            }
-        }
+    private static final String PROPERTY_CONCEPTS =
+            PREFIXES +
+                    "SELECT * { " +
+                    "  ?subjectAreaId cim:entityGroup ?entityGroupId ." +
+                    "  ?entityGroupId cim:properties ?propertyId ." +
+                    "  ?propertyId a ?type ;" +
+                    "              rdfs:domain ?domain ." +
+                    "  ?entityGroupId cim:classes ?domain ." +
+                    "  OPTIONAL {" +
+                    "   ?domain rdfs:subClassOf ?subClassOf " +
+                    "  } " +
+                    "  OPTIONAL {" +
+                    "   ?shapeId sh:targetClass ?domain; " +
+                    "            (sh:and/rdf:rest/rdf:first)?/sh:property ?attributeId ." +
+                    "   ?attributeId sh:path ?propertyId ." +
+                    "  } " +
+                    "} ORDER BY ?subjectAreaId ?entityGroupId ?propertyId";
+    private static final PreparedQuery PROPERTY_CONCEPTS_QUERY = new PreparedQuery(PROPERTY_CONCEPTS);
+    private static final PreparedQuery PROPERTY_CONCEPTS_CLOSURE_QUERY = new PreparedQuery(withShapeClosure(PROPERTY_CONCEPTS));
 
-        return writer.toString();
+    public String propertyConcepts() {
+        return asString(this::propertyConcepts);
     }
 
-    public String propertyConcepts() {
-        StringWriter writer = new StringWriter();
-        String queryString =
-                PREFIXES +
-                        "SELECT * { " +
-                        "  ?subjectAreaId cim:entityGroup ?entityGroupId ." +
-                        "  ?entityGroupId cim:properties ?propertyId ." +
-                        "  ?propertyId a ?type ;" +
-                        "              rdfs:domain ?domain ." +
-                        "  ?entityGroupId cim:classes ?domain ." +
-                        "  OPTIONAL {" +
-                        "   ?domain rdfs:subClassOf ?subClassOf " +
-                        "  } " +
-                        "  OPTIONAL {" +
-                        "   ?shapeId sh:targetClass ?domain; " +
-                        "            (sh:and/rdf:rest/rdf:first)?/sh:property ?attributeId ." +
-                        "   ?attributeId sh:path ?propertyId ." +
-                        "  } " +
-                        "} ORDER BY ?subjectAreaId ?entityGroupId ?propertyId";
-
-        Query query = QueryFactory.create(queryString) ;
+    public void propertyConcepts(Writer writer) throws IOException {
+        cached("propertyConcepts", writer, this::writePropertyConcepts);
+    }
 
+    private void writePropertyConcepts(Writer writer) throws IOException {
         writer.write("subjectAreaId\tentityGroupId\tpropertyId\tprope\tdomain\tsubClassOf\tEntityAndAttribute\tpropertyGUID\n");
+        TsvWriter tsv = new TsvWriter(writer);
+
+        select(shapeClosure ? PROPERTY_CONCEPTS_CLOSURE_QUERY : PROPERTY_CONCEPTS_QUERY, null, (soln) -> {
+            Resource sa = soln.getResource("subjectAreaId");
+            Resource eg = soln.getResource("entityGroupId");
+            Resource propertyId = soln.getResource("propertyId");
+            Resource subClassId = soln.getResource("subClassOf");
+            Resource type = soln.getResource("type");
+            Resource domain = soln.getResource("domain");
+            Resource propertyGuid = soln.getResource("attributeId");
+
+            tsv.id(sa);
+            tsv.id(eg);
+            tsv.id(propertyId);
+            tsv.id(type);
+            tsv.id(domain);
+            tsv.id(subClassId);
+            tsv.joinedId(domain, propertyId);
+            tsv.id(propertyGuid);
+            tsv.endRow();
+        });
+        tsv.flush();
+    }
 
-        try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-            ResultSet results = qexec.execSelect() ;
-            while (results.hasNext()) {
-                QuerySolution soln = results.nextSolution();
-                Resource sa = soln.getResource("subjectAreaId");
-                Resource eg = soln.getResource("entityGroupId");
-                Resource propertyId = soln.getResource("propertyId");
-                Resource subClassId = soln.getResource("subClassOf");
-                Resource type = soln.getResource("type");
-                Resource domain = soln.getResource("domain");
-                Resource propertyGuid = soln.getResource("attributeId");
-
-                writer.write(maybeId(sa));
-                writer.write(maybeId(eg));
-                writer.write(maybeId(propertyId));
-                writer.write(maybeId(type));
-                writer.write(maybeId(domain));
-                writer.write(maybeId(subClassId));
-                writer.write(maybeId(domain).replace("\t",":")+ maybeId(propertyId));
-                writer.write(maybeId(propertyGuid));
-                writer.write("\n");
-            }
-        }
+    private static final PreparedQuery SCHEMAS_QUERY = new PreparedQuery(
+            PREFIXES +
+                    "SELECT * { " +
+                    "  ?schemaId sh:targetClass ?targetClass ;" +
+                    "            a ?type ." +
+                    "  ?subjectAreaId cim:entityGroup ?entityGroupId ." +
+                    "  ?entityGroupId cim:classes ?targetClass ." +
+                    "} ORDER BY ?subjectAreaId ?entityGroupId ?targetClass");
 
-        return writer.toString();
+    public String schemas() {
+        return asString(this::schemas);
     }
 
-    public String schemas() {
-        StringWriter writer = new StringWriter();
-        String queryString =
-                PREFIXES +
-                        "SELECT * { " +
-                        "  ?schemaId sh:targetClass ?targetClass ;" +
-                        "            a ?type ." +
-                        "  ?subjectAreaId cim:entityGroup ?entityGroupId ." +
-                        "  ?entityGroupId cim:classes ?targetClass ." +
-                        "} ORDER BY ?subjectAreaId ?entityGroupId ?targetClass";
-
-        Query query = QueryFactory.create(queryString) ;
+    public void schemas(Writer writer) throws IOException {
+        cached("schemas", writer, this::writeSchemas);
+    }
 
+    private void writeSchemas(Writer writer) throws IOException {
         writer.write("targetClass\tsubjectAreaId\tentityGroupId\tschemaId\tsche\ttargetClass\n");
+        TsvWriter tsv = new TsvWriter(writer);
+
+        select(SCHEMAS_QUERY, null, (soln) -> {
+            Resource targetClass = soln.getResource("targetClass");
+            Resource subjectAreaId = soln.getResource("subjectAreaId");
+            Resource entityGroupId = soln.getResource("entityGroupId");
+            Resource schemaId = soln.getResource("schemaId");
+            Resource sche = soln.getResource("type");
+
+            tsv.id(targetClass);
+            tsv.id(subjectAreaId);
+            tsv.id(entityGroupId);
+            tsv.id(schemaId);
+            tsv.id(sche);
+            tsv.id(targetClass);
+            tsv.endRow();
+        });
+        tsv.flush();
+    }
 
-        try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-            ResultSet results = qexec.execSelect() ;
-            while (results.hasNext()) {
-                QuerySolution soln = results.nextSolution();
-                Resource targetClass = soln.getResource("targetClass");
-                Resource subjectAreaId = soln.getResource("subjectAreaId");
-                Resource entityGroupId = soln.getResource("entityGroupId");
-                Resource schemaId = soln.getResource("schemaId");
-                Resource sche = soln.getResource("type");
-
-                writer.write(maybeId(targetClass));
-                writer.write(maybeId(subjectAreaId));
-                writer.write(maybeId(entityGroupId));
-                writer.write(maybeId(schemaId));
-                writer.write(maybeId(sche));
-                writer.write(maybeId(targetClass));
-                writer.write("\n");
-            }
-        }
+    private static final String SCHEMA_PROPERTIES =
+            PREFIXES +
+                    "SELECT * { " +
+                    "  ?schemaId sh:targetClass ?targetClass ;" +
+                    "            (sh:and/rdf:rest/rdf:first)?/sh:property ?attributeId ." +
+                    "  ?attributeId sh:path ?path ." +
+                    "  OPTIONAL { ?attributeId sh:datatype ?datatype }" +
+                    "  OPTIONAL { ?attributeId sh:minCount ?minCount }" +
+                    "  OPTIONAL { ?attributeId sh:maxCount ?maxCount }" +
+                    "  OPTIONAL { ?attributeId sh:node ?node }" +
+                    "  ?subjectAreaId cim:entityGroup ?entityGroupId ." +
+                    "  ?entityGroupId cim:classes ?targetClass ." +
+                    "} ORDER BY ?subjectAreaId ?entityGroupId ?targetClass";
+    private static final PreparedQuery SCHEMA_PROPERTIES_QUERY = new PreparedQuery(SCHEMA_PROPERTIES);
+    private static final PreparedQuery SCHEMA_PROPERTIES_CLOSURE_QUERY = new PreparedQuery(withShapeClosure(SCHEMA_PROPERTIES));
 
-        return writer.toString();
+    public String schemaProperties() {
+        return asString(this::schemaProperties);
     }
 
-    public String schemaProperties() {
-        StringWriter writer = new StringWriter();
-        String queryString =
-                PREFIXES +
-                        "SELECT * { " +
-                        "  ?schemaId sh:targetClass ?targetClass ;" +
-                        "            (sh:and/rdf:rest/rdf:first)?/sh:property ?attributeId ." +
-                        "  ?attributeId sh:path ?path ." +
-                        "  OPTIONAL { ?attributeId sh:datatype ?datatype }" +
-                        "  OPTIONAL { ?attributeId sh:minCount ?minCount }" +
-                        "  OPTIONAL { ?attributeId sh:maxCount ?maxCount }" +
-                        "  OPTIONAL { ?attributeId sh:node ?node }" +
-                        "  ?subjectAreaId cim:entityGroup ?entityGroupId ." +
-                        "  ?entityGroupId cim:classes ?targetClass ." +
-                        "} ORDER BY ?subjectAreaId ?entityGroupId ?targetClass";
-
-        Query query = QueryFactory.create(queryString) ;
+    public void schemaProperties(Writer writer) throws IOException {
+        cached("schemaProperties", writer, this::writeSchemaProperties);
+    }
 
+    private void writeSchemaProperties(Writer writer) throws IOException {
         writer.write("fullPath\tpath\tsubjectAreaId\tentityGroupId\tschemaId\tpropertyId\tdatatype\tminCount\tmaxCount\tnode\tschemaName\n");
-
-        try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-            ResultSet results = qexec.execSelect() ;
-            while (results.hasNext()) {
-                QuerySolution soln = results.nextSolution();
-                Resource path = soln.getResource("path");
-                Resource subjectAreaId = soln.getResource("subjectAreaId");
-                Resource entityGroupId = soln.getResource("entityGroupId");
-                Resource schemaId = soln.getResource("schemaId");
-                Resource propertyId = soln.getResource("attributeId");
-                Resource datatype = soln.getResource("datatype");
-                Literal minCount = soln.getLiteral("minCount");
-                Literal maxCount = soln.getLiteral("maxCount");
-                Resource node = soln.getResource("node");
-                Resource schemaName = soln.getResource("targetClass");
-
-                writer.write(maybeId(schemaName).replace("\t", ":") + maybeId(path));
-                writer.write(maybeId(path));
-                writer.write(maybeId(subjectAreaId));
-                writer.write(maybeId(entityGroupId));
-                writer.write(maybeId(schemaId));
-                writer.write(maybeId(propertyId));
-                writer.write(maybeId(datatype));
-                writer.write(maybeData(minCount));
-                writer.write(maybeData(maxCount));
-                writer.write(maybeId(node));
-                writer.write(maybeId(schemaName));
-                writer.write("\n");
-            }
-        }
-
-        return writer.toString();
+        TsvWriter tsv = new TsvWriter(writer);
+
+        select(shapeClosure ? SCHEMA_PROPERTIES_CLOSURE_QUERY : SCHEMA_PROPERTIES_QUERY, null, (soln) -> {
+            Resource path = soln.getResource("path");
+            Resource subjectAreaId = soln.getResource("subjectAreaId");
+            Resource entityGroupId = soln.getResource("entityGroupId");
+            Resource schemaId = soln.getResource("schemaId");
+            Resource propertyId = soln.getResource("attributeId");
+            Resource datatype = soln.getResource("datatype");
+            Literal minCount = soln.getLiteral("minCount");
+            Literal maxCount = soln.getLiteral("maxCount");
+            Resource node = soln.getResource("node");
+            Resource schemaName = soln.getResource("targetClass");
+
+            tsv.joinedId(schemaName, path);
+            tsv.id(path);
+            tsv.id(subjectAreaId);
+            tsv.id(entityGroupId);
+            tsv.id(schemaId);
+            tsv.id(propertyId);
+            tsv.id(datatype);
+            tsv.data(minCount);
+            tsv.data(maxCount);
+            tsv.id(node);
+            tsv.id(schemaName);
+            tsv.endRow();
+        });
+        tsv.flush();
     }
 
+    /**
+     * All the tables, by name, in the order they are printed
+     * @return
+     */
+    public Map<String, Report> tables() {
+        Map<String, Report> tables = new LinkedHashMap<>();
+        tables.put("subjectAreas", this::subjectAreas);
+        tables.put("entityGroups", this::entityGroups);
+        tables.put("classConcepts", this::classConcepts);
+        tables.put("propertyConcepts", this::propertyConcepts);
+        tables.put("schemas", this::schemas);
+        tables.put("schemaProperties", this::schemaProperties);
+        return tables;
+    }
 
-    private String maybeData(Literal lit) {
-        if (lit != null) {
-            return lit.getString() +  "\t";
-        } else {
-            return "\t";
-        }
+    /**
+     * Every named report: the reports of {@link Queries} followed by the tables
+     * @return
+     */
+    public Map<String, Report> reports() {
+        Map<String, Report> reports = new LinkedHashMap<>();
+        reports.put("listModelElementTypes", this::listModelElementTypes);
+        reports.put("listClasses", this::listClasses);
+        reports.put("reconstructTable", this::reconstructTable);
+        reports.put("cardinalities", this::cardinalities);
+        reports.putAll(tables());
+        return reports;
     }
 
-    private String maybeId(Resource res) {
-        if (res != null) {
-            String uri = res.getURI();
-
-            if (uri == null) { // blank
-                return "\t";
-            } else {
-                if (uri.contains(CIM_NS)) {
-                    return res.getURI().replace(CIM_NS, "") + "\t";
-                } else if (uri.contains("#")) {
-                    return uri.split("#")[1] + "\t";
-                } else {
-                    String[] parts = uri.split("/");
-                    return parts[parts.length - 1] + "\t";
-                }
+    /**
+     * Exports some of the {@link #reports()} to their own <code>&lt;name&gt;.tsv</code> files in a directory,
+     * concurrently
+     * @param names names of the reports
+     * @param directory
+     * @param executor
+     * @return the files written, by report name
+     * @throws IOException if any of the reports could not be exported, after all the others have finished
+     * @throws IllegalArgumentException if a report does not exist
+     */
+    public Map<String, Path> exportReports(Collection<String> names, Path directory, ExecutorService executor) throws IOException {
+        Map<String, Report> reports = reports();
+        Map<String, Report> selected = new LinkedHashMap<>();
+        for (String name : names) {
+            Report report = reports.get(name);
+            if (report == null) {
+                throw new IllegalArgumentException("Unknown report: " + name);
             }
-        } else {
-            return "\t";
+            selected.put(name, report);
         }
+        return export(selected, directory, executor);
+    }
+
+    /**
+     * Exports every table to its own <code>&lt;name&gt;.tsv</code> file in a directory.
+     * The tables only read the model, so they are submitted to the executor all at once and the total time is close
+     * to the time of the slowest table when the executor has enough threads.
+     * @param directory
+     * @param executor
+     * @return the files written, by table name
+     * @throws IOException if any of the tables could not be exported, after all the others have finished
+     */
+    public Map<String, Path> exportTables(Path directory, ExecutorService executor) throws IOException {
+        return export(tables(), directory, executor);
     }
 }
@@ -0,0 +1,208 @@
+package cim.examples.rdf;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphListener;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Results of the reports of a {@link Queries}, see {@link Queries#setCache(ResultCache)}.
+ * Results are kept while the version of the model does not change: every cached result is dropped as soon as the
+ * version is different, so reloading or updating the model invalidates the cache without any explicit call.
+ * The weight of a result is its number of characters. When the total weight goes over the maximum, the least recently
+ * used results are evicted. Results heavier than the maximum are never cached.
+ */
+public class ResultCache {
+
+    // Weight of results that are not text, like counts
+    private static final int VALUE_WEIGHT = 16;
+
+    private final long maxWeight;
+    private final LongSupplier version;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight = 0;
+    private long entriesVersion;
+    private long hits = 0;
+    private long misses = 0;
+
+    private static class Entry {
+        final Object value;
+        final long weight;
+
+        Entry(Object value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * @param maxWeight maximum number of characters of all the cached results
+     * @param version version of the model, for instance {@link cim.loader.CIMDataset#getVersion()}
+     */
+    public ResultCache(long maxWeight, LongSupplier version) {
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("Maximum weight must not be negative: " + maxWeight);
+        }
+        this.maxWeight = maxWeight;
+        this.version = version;
+        this.entriesVersion = version.getAsLong();
+    }
+
+    /**
+     * Cache for a model that is updated through its own API, using {@link #trackChanges(Model)} as the version.
+     * Models that are views over a dataset updated directly, like TDB2 models or CIMDataset union models, need the
+     * version of the dataset instead.
+     * @param model
+     * @param maxWeight maximum number of characters of all the cached results
+     * @return
+     */
+    public static ResultCache forModel(Model model, long maxWeight) {
+        return new ResultCache(maxWeight, trackChanges(model));
+    }
+
+    /**
+     * Counter incremented on every change notified by the graph of a model
+     * @param model
+     * @return
+     */
+    public static LongSupplier trackChanges(Model model) {
+        AtomicLong changes = new AtomicLong();
+        model.getGraph().getEventManager().register(new GraphListener() {
+            @Override
+            public void notifyAddTriple(Graph g, Triple t) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void notifyAddArray(Graph g, Triple[] triples) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void notifyAddList(Graph g, List<Triple> triples) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void notifyAddIterator(Graph g, Iterator<Triple> it) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void notifyAddGraph(Graph g, Graph added) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void notifyDeleteTriple(Graph g, Triple t) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void notifyDeleteList(Graph g, List<Triple> triples) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void notifyDeleteArray(Graph g, Triple[] triples) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void notifyDeleteIterator(Graph g, Iterator<Triple> it) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void notifyDeleteGraph(Graph g, Graph removed) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void notifyEvent(Graph source, Object value) {
+                changes.incrementAndGet();
+            }
+        });
+        return changes::get;
+    }
+
+    // Maximum number of characters of all the cached results
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    // Current version of the model, to be passed to put() with the result computed from it
+    long version() {
+        return version.getAsLong();
+    }
+
+    /**
+     * Cached result, if it is still current
+     * @param key
+     * @return the result, null if it is not cached
+     */
+    synchronized Object get(String key) {
+        invalidate(version.getAsLong());
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Caches a result, unless the model changed while it was computed
+     * @param key
+     * @param value a String, or any other immutable value
+     * @param computedVersion value of {@link #version()} before computing the result
+     */
+    synchronized void put(String key, Object value, long computedVersion) {
+        invalidate(version.getAsLong());
+        long valueWeight = value instanceof String ? ((String) value).length() : VALUE_WEIGHT;
+        if (computedVersion != entriesVersion || valueWeight > maxWeight) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(value, valueWeight));
+        weight += valueWeight - (previous == null ? 0 : previous.weight);
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            weight -= eldest.next().getValue().weight;
+            eldest.remove();
+        }
+    }
+
+    // Drops every result
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    private void invalidate(long current) {
+        if (current != entriesVersion) {
+            clear();
+            entriesVersion = current;
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    // Number of characters of the cached results
+    public synchronized long getWeight() {
+        return weight;
+    }
+}
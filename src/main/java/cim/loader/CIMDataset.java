@@ -0,0 +1,349 @@
+package cim.loader;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.system.Txn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Loads the requested level into a transactional Jena Dataset where the triples of every file of the distribution
+ * are stored in their own named graph, named after the URI of the file.
+ * The union of the named graphs contains the same triples returned by {@link CIMLoader#getJenaModel()}.
+ * When a file changes only that file needs to be parsed again and its named graph replaced, so the cost of an
+ * update is proportional to the size of the changed file and not to the size of the whole model.
+ * If the loader materializes the shape closure, the inferred triples are kept in their own named graph. An update
+ * only computes again the closure of the shapes depending on the subjects of the replaced triples.
+ */
+public class CIMDataset {
+
+    // Named graph with the triples inferred by ShapeClosure
+    public static final Node SHAPE_CLOSURE_GRAPH = NodeFactory.createURI("urn:cim:shape-closure");
+
+    private final CIMLoader loader;
+    private final Dataset dataset;
+    private final AtomicLong version = new AtomicLong();
+
+    public CIMDataset(CIMLoader loader) throws IOException {
+        this.loader = loader;
+        this.dataset = DatasetFactory.createTxnMem();
+        Txn.executeWrite(dataset, () -> CIMLoader.setPrefixes(dataset.getUnionModel()));
+        reloadAll();
+    }
+
+    // The dataset, with one named graph per file of the distribution
+    public Dataset getDataset() {
+        return dataset;
+    }
+
+    // Union of all the named graphs in the dataset, ready to be queried
+    public Model getModel() {
+        return dataset.getUnionModel();
+    }
+
+    /**
+     * Counter incremented every time the content of the dataset changes
+     * @return
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Name of the graph holding the triples loaded from a file
+     * @param file
+     * @return
+     */
+    public static Node graphName(Path file) {
+        return NodeFactory.createURI(file.toAbsolutePath().normalize().toUri().toString());
+    }
+
+    /**
+     * Parses all the files in the distribution again, replacing the content of the dataset
+     * @throws IOException
+     */
+    public synchronized void reloadAll() throws IOException {
+        List<Path> files = loader.getSchemaFiles();
+        List<Graph> graphs = parse(files);
+
+        Txn.executeWrite(dataset, () -> {
+            DatasetGraph dsg = dataset.asDatasetGraph();
+            dsg.clear();
+            for (int i = 0; i < files.size(); i++) {
+                dsg.addGraph(graphName(files.get(i)), graphs.get(i));
+            }
+            updateShapeClosure(dsg);
+        });
+        version.incrementAndGet();
+    }
+
+    /**
+     * Updates the named graph for a single file of the distribution.
+     * The file is parsed again if it exists and belongs to the requested level, otherwise its graph is removed.
+     * When the loader has a selection it is computed again, since the change can add or remove references to other
+     * entity groups, and the graphs of the files entering or leaving the selection are updated too.
+     * @param file
+     * @throws IOException
+     */
+    public synchronized void reload(Path file) throws IOException {
+        if (loader.hasSelection()) {
+            reloadSelection(Collections.singletonList(file));
+            return;
+        }
+        Node graphName = graphName(file);
+        if (Files.isRegularFile(file) && CIMLoader.mustLoad(file, loader.getUseCase())) {
+            Graph graph = GraphFactory.createGraphMem();
+            loader.loadRDF(Collections.singletonList(file), StreamRDFLib.graph(graph));
+            Txn.executeWrite(dataset, () -> replaceGraph(dataset.asDatasetGraph(), graphName, graph));
+        } else {
+            Txn.executeWrite(dataset, () -> replaceGraph(dataset.asDatasetGraph(), graphName, null));
+        }
+        version.incrementAndGet();
+    }
+
+    /**
+     * Removes the named graphs of a deleted file, or of all the files under a deleted directory.
+     * When the loader has a selection it is computed again, as in {@link #reload(Path)}.
+     * @param path
+     * @throws IOException
+     */
+    public synchronized void remove(Path path) throws IOException {
+        if (loader.hasSelection()) {
+            reloadSelection(Collections.emptyList());
+            return;
+        }
+        String name = graphName(path).getURI();
+        String directory = name.endsWith("/") ? name : name + "/";
+        List<Node> graphNames = Txn.calculateRead(dataset, () -> {
+            List<Node> names = new ArrayList<>();
+            dataset.asDatasetGraph().listGraphNodes().forEachRemaining((g) -> {
+                if (g.isURI() && (g.getURI().equals(name) || g.getURI().startsWith(directory))) {
+                    names.add(g);
+                }
+            });
+            return names;
+        });
+        if (graphNames.isEmpty()) {
+            return;
+        }
+        Txn.executeWrite(dataset, () -> {
+            for (Node graphName : graphNames) {
+                replaceGraph(dataset.asDatasetGraph(), graphName, null);
+            }
+        });
+        version.incrementAndGet();
+    }
+
+    // Computes the selection of the loader again, parsing the changed files and the files entering the selection, and
+    // removing the graphs of the files leaving it
+    private synchronized void reloadSelection(Collection<Path> changed) throws IOException {
+        Set<Node> changedNames = changed.stream().map(CIMDataset::graphName).collect(Collectors.toSet());
+        Set<Node> leaving = Txn.calculateRead(dataset, () -> {
+            Set<Node> names = new HashSet<>();
+            dataset.asDatasetGraph().listGraphNodes().forEachRemaining(names::add);
+            names.remove(SHAPE_CLOSURE_GRAPH);
+            return names;
+        });
+        List<Path> files = new ArrayList<>();
+        for (Path file : loader.getSchemaFiles()) {
+            Node graphName = graphName(file);
+            if (!leaving.remove(graphName) || changedNames.contains(graphName)) {
+                files.add(file);
+            }
+        }
+        if (files.isEmpty() && leaving.isEmpty()) {
+            return;
+        }
+        List<Graph> graphs = parse(files);
+        Txn.executeWrite(dataset, () -> {
+            DatasetGraph dsg = dataset.asDatasetGraph();
+            for (int i = 0; i < files.size(); i++) {
+                replaceGraph(dsg, graphName(files.get(i)), graphs.get(i));
+            }
+            for (Node graphName : leaving) {
+                replaceGraph(dsg, graphName, null);
+            }
+        });
+        version.incrementAndGet();
+    }
+
+    // Parses files into one graph each
+    private List<Graph> parse(List<Path> files) throws IOException {
+        if (files.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<List<Object>> documents = loader.getExpandedDocuments(files);
+        List<Graph> graphs = new ArrayList<>(files.size());
+        for (List<Object> document : documents) {
+            Graph graph = GraphFactory.createGraphMem();
+            loader.expandedToRDF(document, StreamRDFLib.graph(graph));
+            graphs.add(graph);
+        }
+        return graphs;
+    }
+
+    /**
+     * Replaces a named graph inside the write transaction of an update, with the inferred triples of the shapes
+     * depending on the subjects of its old or new triples. The rest of the closure does not change.
+     * @param dsg
+     * @param graphName
+     * @param graph new content of the graph, null to remove it
+     */
+    private void replaceGraph(DatasetGraph dsg, Node graphName, Graph graph) {
+        Set<Node> subjects = new HashSet<>();
+        Set<Node> affected = new HashSet<>();
+        if (loader.isShapeClosure()) {
+            ShapeGraph.forEach(dsg.getGraph(graphName), Node.ANY, Node.ANY, Node.ANY, (t) -> subjects.add(t.getSubject()));
+            if (graph != null) {
+                ShapeGraph.forEach(graph, Node.ANY, Node.ANY, Node.ANY, (t) -> subjects.add(t.getSubject()));
+            }
+            // shapes depending on the old triples, the new ones are found once the graph is replaced
+            affected.addAll(ShapeClosure.affected(dsg.getUnionGraph(), subjects));
+        }
+        dsg.removeGraph(graphName);
+        if (graph != null) {
+            dsg.addGraph(graphName, graph);
+        }
+        if (loader.isShapeClosure()) {
+            affected.addAll(ShapeClosure.affected(dsg.getUnionGraph(), subjects));
+            for (Node shape : affected) {
+                dsg.deleteAny(SHAPE_CLOSURE_GRAPH, shape, Node.ANY, Node.ANY);
+            }
+            for (Triple t : ShapeClosure.infer(dsg.getUnionGraph(), affected)) {
+                dsg.add(SHAPE_CLOSURE_GRAPH, t.getSubject(), t.getPredicate(), t.getObject());
+            }
+        }
+    }
+
+    // Replaces all the inferred triples, inside the write transaction of an update
+    private void updateShapeClosure(DatasetGraph dsg) {
+        if (!loader.isShapeClosure()) {
+            return;
+        }
+        dsg.removeGraph(SHAPE_CLOSURE_GRAPH);
+        Graph closure = GraphFactory.createGraphMem();
+        ShapeClosure.infer(dsg.getUnionGraph()).forEach(closure::add);
+        dsg.addGraph(SHAPE_CLOSURE_GRAPH, closure);
+    }
+
+    /**
+     * Starts a background thread watching the directory of the distribution for changes.
+     * Created, modified and deleted files are reloaded individually, a change in the @context reloads everything.
+     * Deleting a directory removes the graphs of all the files under it.
+     * @param errorHandler receives the errors found reloading files, the dataset keeps the previous version of those files
+     * @return handle to stop watching
+     * @throws IOException
+     */
+    public Closeable watch(Consumer<Exception> errorHandler) throws IOException {
+        Path root = loader.getCimDirectory();
+        Path contextPath = loader.contextPath();
+        Path context = contextPath == null ? null : contextPath.toAbsolutePath().normalize();
+        WatchService watcher = root.getFileSystem().newWatchService();
+        Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+        register(root, watcher, directories);
+
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = watcher.take();
+                    Path directory = directories.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        try {
+                            if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                                reloadAll();
+                                continue;
+                            }
+                            Path changed = directory.resolve((Path) event.context());
+                            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                                register(changed, watcher, directories);
+                                List<Path> files = filesIn(changed);
+                                if (loader.hasSelection()) {
+                                    reloadSelection(files);
+                                } else {
+                                    for (Path file : files) {
+                                        reload(file);
+                                    }
+                                }
+                            } else if (changed.toAbsolutePath().normalize().equals(context)) {
+                                reloadAll();
+                            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE && !Files.exists(changed)) {
+                                remove(changed);
+                            } else if (isDocument(changed)) {
+                                reload(changed);
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            errorHandler.accept(e);
+                        }
+                    }
+                    if (!key.reset()) {
+                        directories.remove(key);
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // stopped
+            }
+        }, "cim-dataset-watcher");
+        thread.setDaemon(true);
+        thread.start();
+
+        return () -> {
+            watcher.close();
+            thread.interrupt();
+        };
+    }
+
+    private static void register(Path directory, WatchService watcher, Map<WatchKey, Path> directories) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path d : paths.filter(Files::isDirectory).collect(Collectors.toList())) {
+                WatchKey key = d.register(watcher,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                directories.put(key, d);
+            }
+        }
+    }
+
+    private List<Path> filesIn(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(this::isDocument).collect(Collectors.toList());
+        }
+    }
+
+    // Files whose changes can change the dataset: the files of the requested level, or with a selection every JSON-LD
+    // file, since the selection follows the references between all the entity groups
+    private boolean isDocument(Path file) {
+        if (loader.hasSelection()) {
+            return file.toString().endsWith(".jsonld");
+        }
+        return CIMLoader.mustLoad(file, loader.getUseCase());
+    }
+}
@@ -1,72 +1,384 @@
 package cim.loader;
 
+import com.github.jsonldjava.core.Context;
+import com.github.jsonldjava.core.JsonLdApi;
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.github.jsonldjava.core.JsonLdError;
 import com.github.jsonldjava.core.JsonLdOptions;
 import com.github.jsonldjava.core.JsonLdProcessor;
-import com.github.jsonldjava.core.JsonLdUtils;
-import com.github.jsonldjava.utils.JsonUtils;
+import com.github.jsonldjava.core.RDFDataset;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Dataset;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.tdb2.loader.DataLoader;
+import org.apache.jena.tdb2.loader.LoaderFactory;
+import org.apache.jena.tdb2.loader.base.LoaderOps;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 public class CIMLoader {
 
+    // File in a TDB2 database directory storing the content hash of the loaded files
+    private static final String TDB2_CONTENT_KEY = "cim-content.sha256";
+
     private final Path cimDirectory;
     private final CIMUseCase useCase;
+    private int parallelism = 1;
+    private Path snapshotDirectory = defaultSnapshotDirectory();
+    private boolean shapeClosure = false;
+    private Set<String> subjectAreas = Collections.emptySet();
+    private Set<String> entityGroups = Collections.emptySet();
+    private final List<LoadListener> listeners = new CopyOnWriteArrayList<>();
 
     public CIMLoader(Path cimDirectory, CIMUseCase useCase) {
         this.cimDirectory = cimDirectory;
         this.useCase = useCase;
     }
 
+    Path getCimDirectory() {
+        return cimDirectory;
+    }
+
+    CIMUseCase getUseCase() {
+        return useCase;
+    }
+
+    /**
+     * Number of worker threads used to read and parse the files of the distribution.
+     * With the default value of 1 files are parsed sequentially in the calling thread.
+     * Documents are always returned in the order of {@link #getSchemaFiles()}, whatever the number of workers.
+     * @param parallelism
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Directory where binary snapshots of the models returned by {@link #getJenaModel()} are cached.
+     * A snapshot is reused as long as the paths, sizes and contents of the loaded files, including the @context,
+     * do not change, otherwise the model is loaded from the distribution and a new snapshot is written.
+     * Defaults to the value of the <code>cim.snapshots</code> system property, or no cache if it is not set.
+     * @param snapshotDirectory directory for the snapshots, null disables the cache
+     */
+    public void setSnapshotDirectory(Path snapshotDirectory) {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    /**
+     * Adds the property shapes inherited through <code>sh:and</code> as explicit triples after loading the model,
+     * see {@link ShapeClosure}. Queries can then use the materialized triples instead of property paths.
+     * Disabled by default.
+     * @param shapeClosure
+     */
+    public void setShapeClosure(boolean shapeClosure) {
+        this.shapeClosure = shapeClosure;
+    }
+
+    boolean isShapeClosure() {
+        return shapeClosure;
+    }
+
+    /**
+     * Restricts loading to some subject areas and entity groups, named after their directories in the distribution,
+     * plus the entity groups defining the classes and shapes they reference through <code>sh:node</code>,
+     * <code>rdfs:subClassOf</code> and <code>sh:and</code>, transitively. See {@link DistributionSelection}.
+     * With empty collections, the default, the whole distribution is loaded.
+     * @param subjectAreas
+     * @param entityGroups
+     */
+    public void setSelection(Collection<String> subjectAreas, Collection<String> entityGroups) {
+        this.subjectAreas = new LinkedHashSet<>(subjectAreas);
+        this.entityGroups = new LinkedHashSet<>(entityGroups);
+    }
+
+    // Whether loading is restricted to a selection, see setSelection
+    boolean hasSelection() {
+        return !subjectAreas.isEmpty() || !entityGroups.isEmpty();
+    }
+
+    /**
+     * Registers a listener receiving the wall time, bytes read, documents, triples and allocated bytes of every
+     * phase of the loads done by this loader, see {@link LoadPhase}.
+     * Phases are also recorded as <code>cim.LoadPhase</code> JFR events, whether there are listeners or not.
+     * @param listener
+     */
+    public void addListener(LoadListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(LoadListener listener) {
+        listeners.remove(listener);
+    }
+
+    private PhaseRecorder startPhase(LoadPhase phase) {
+        return new PhaseRecorder(phase, cimDirectory);
+    }
+
     // Loads the requested level as an Apache Jena Model
     public Model getJenaModel() throws IOException {
+        List<Path> files = getSchemaFiles();
+        SnapshotCache snapshots = snapshotDirectory == null ? null : new SnapshotCache(snapshotDirectory, snapshotSource());
+        String key = snapshots == null ? null : contentKey(files);
+
+        if (snapshots != null) {
+            Model model = createModel();
+            PhaseRecorder phase = startPhase(LoadPhase.SNAPSHOT_READ);
+            boolean found = snapshots.read(useCase, key, model);
+            if (found) {
+                phase.addBytesRead(Files.size(snapshots.snapshotFile(useCase, key)));
+                phase.addTriples(model.size());
+            }
+            phase.finish(listeners);
+            if (found) {
+                return model;
+            }
+        }
+
+        Model model = createModel();
+        loadRDF(files, StreamRDFLib.graph(model.getGraph()));
+        if (shapeClosure) {
+            materializeShapeClosure(model.getGraph());
+        }
+        if (snapshots != null) {
+            PhaseRecorder phase = startPhase(LoadPhase.SNAPSHOT_WRITE);
+            snapshots.write(useCase, key, model);
+            phase.addTriples(model.size());
+            phase.finish(listeners);
+        }
+        return model;
+    }
+
+    private void materializeShapeClosure(Graph graph) {
+        PhaseRecorder phase = startPhase(LoadPhase.SHAPE_CLOSURE);
+        phase.addTriples(ShapeClosure.materialize(graph));
+        phase.finish(listeners);
+    }
+
+    /**
+     * Loads the requested level into a disk-backed TDB2 database and returns a Model over its default graph,
+     * so the model does not need to fit in the heap.
+     * The database stores the content hash of the files it was loaded from. If the files did not change, the existing
+     * database is reused without parsing the distribution, otherwise its content is replaced using the TDB2 bulk loader.
+     * TDB2 models can only be accessed inside transactions, see {@link org.apache.jena.system.Txn}.
+     * @param databaseDirectory directory of the TDB2 database, created if it does not exist
+     * @return
+     * @throws IOException
+     */
+    public Model getTDB2Model(Path databaseDirectory) throws IOException {
+        List<Path> files = getSchemaFiles();
+        String key = contentKey(files);
+        Path marker = databaseDirectory.resolve(TDB2_CONTENT_KEY);
+
+        Files.createDirectories(databaseDirectory);
+        Dataset dataset = TDB2Factory.connectDataset(databaseDirectory.toString());
+        boolean current = Files.isRegularFile(marker)
+                && new String(Files.readAllBytes(marker), StandardCharsets.UTF_8).equals(key);
+        if (!current) {
+            Files.deleteIfExists(marker);
+            Txn.executeWrite(dataset, () -> dataset.asDatasetGraph().clear());
+            DataLoader bulkLoader = LoaderFactory.createLoader(dataset.asDatasetGraph(), LoaderOps.nullOutput());
+            bulkLoader.startBulk();
+            try {
+                loadRDF(files, bulkLoader.stream());
+                bulkLoader.finishBulk();
+            } catch (IOException | RuntimeException e) {
+                bulkLoader.finishException(e);
+                throw e;
+            }
+            if (shapeClosure) {
+                Txn.executeWrite(dataset, () -> materializeShapeClosure(dataset.asDatasetGraph().getDefaultGraph()));
+            }
+            Files.write(marker, key.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Model model = dataset.getDefaultModel();
+        Txn.executeWrite(dataset, () -> setPrefixes(model));
+        return model;
+    }
+
+    // Content hash of the files being loaded, including the @context, and of the inference applied to them
+    private String contentKey(List<Path> files) throws IOException {
+        List<Path> inputs = new ArrayList<>(files);
+        Path contextPath = contextPath();
+        if (contextPath != null) {
+            inputs.add(contextPath);
+        }
+        String key = SnapshotCache.key(useCase, cimDirectory, inputs);
+        return shapeClosure ? key + "-closure" : key;
+    }
+
+    // Identifies the snapshots of this loader, so loaders of other distributions or selections can share the directory
+    private String snapshotSource() {
+        return cimDirectory.toAbsolutePath().normalize() + "\n" + new TreeSet<>(subjectAreas) + "\n"
+                + new TreeSet<>(entityGroups) + "\n" + shapeClosure;
+    }
+
+    private static Model createModel() {
         Model model = ModelFactory.createDefaultModel();
-        // Set-up some useful prefixes so we can use CURIES
+        setPrefixes(model);
+        return model;
+    }
+
+    // Set-up some useful prefixes so we can use CURIES
+    static void setPrefixes(Model model) {
         model.setNsPrefix("cim", "http://cim.org/model/");
         model.setNsPrefix("rdf", "http://www.w3.org/1999/02/22-rdf-syntax-ns#");
         model.setNsPrefix("rdfs", "http://www.w3.org/2000/01/rdf-schema#");
         model.setNsPrefix("sh", "http://www.w3.org/ns/shacl#");
         model.setNsPrefix("xsd", "http://www.w3.org/2001/XMLSchema#");
+    }
 
-        String jsonld = JsonUtils.toPrettyString(getJsonLDGraph());
-        model.read(new StringReader(jsonld), "", "JSON-LD");
-        return model;
+    /**
+     * Sends the triples for the requested level to a Jena StreamRDF.
+     * The JSON-LD processor converts the documents to RDF and every triple is passed on directly, without
+     * flattening the documents or serialising them as JSON-LD text to be parsed again by Jena.
+     * @param output
+     * @throws IOException
+     */
+    public void loadRDF(StreamRDF output) throws IOException {
+        loadRDF(getSchemaFiles(), output);
+    }
+
+    void loadRDF(List<Path> files, StreamRDF output) throws IOException {
+        List<Object> nodes = new ArrayList<>();
+        getExpandedDocuments(files).forEach(nodes::addAll);
+        expandedToRDF(nodes, output);
+    }
+
+    // Converts expanded JSON-LD nodes to RDF, sending the triples to the output stream
+    void expandedToRDF(List<Object> nodes, StreamRDF output) {
+        PhaseRecorder phase = startPhase(LoadPhase.TO_RDF);
+        phase.addDocuments(nodes.size());
+        long[] triples = new long[1];
+        StreamRDF counting = new StreamRDFWrapper(output) {
+            @Override
+            public void triple(Triple triple) {
+                triples[0]++;
+                super.triple(triple);
+            }
+
+            @Override
+            public void quad(Quad quad) {
+                triples[0]++;
+                super.quad(quad);
+            }
+        };
+        counting.start();
+        // the nodes are already expanded, so they are converted without going through the expansion algorithm again
+        RDFDataset dataset = new JsonLdApi(nodes, new JsonLdOptions()).toRDF();
+        new StreamRDFCallback(counting).call(dataset);
+        counting.finish();
+        phase.addTriples(triples[0]);
+        phase.finish(listeners);
     }
 
     // Loads the requested level as JSON-LD flattened document
     public Object getJsonLDGraph() throws IOException {
-        List<Object> resourceGraphs = getJsonDocuments();
-        HashMap<String,Object> graph = new HashMap<>();
-        graph.put("@graph", resourceGraphs);
-        return JsonLdProcessor.flatten(graph, new JsonLdOptions());
+        List<Object> nodes = new ArrayList<>();
+        getExpandedDocuments(getSchemaFiles()).forEach(nodes::addAll);
+        PhaseRecorder phase = startPhase(LoadPhase.FLATTEN);
+        phase.addDocuments(nodes.size());
+        // expanding already expanded nodes does not involve any @context processing
+        Object flattened = JsonLdProcessor.flatten(nodes, new JsonLdOptions());
+        phase.finish(listeners);
+        return flattened;
     }
 
     // Loads the requested level as a list of parsed JSON documents
     public List<Object> getJsonDocuments() throws IOException {
+        return getJsonDocuments(getSchemaFiles());
+    }
+
+    List<Object> getJsonDocuments(List<Path> files) throws IOException {
         Object context = loadJsonldContext();
-        return getSchemaFiles()
-                .stream()
-                .map((f) -> CIMLoader.file2JSON(f,context))
-                .collect(Collectors.toList());
+        PhaseRecorder phase = startPhase(LoadPhase.PARSE);
+        List<Object> documents = mapFiles(files, (f) -> {
+            phase.addBytesRead(Files.size(f));
+            return CIMLoader.file2JSON(f, context);
+        }, phase);
+        phase.addDocuments(documents.size());
+        phase.finish(listeners);
+        return documents;
+    }
+
+    /**
+     * Parses the files and expands them to JSON-LD nodes, one list of nodes per file.
+     * The @context of the distribution is processed only once and every document is expanded against it, instead of
+     * copying the context into each document and processing it again for every one of them.
+     * Files are parsed with {@link JsonNodeReader}, and each top level node is expanded as soon as it is read.
+     * @param files
+     * @return
+     * @throws IOException
+     */
+    List<List<Object>> getExpandedDocuments(List<Path> files) throws IOException {
+        Object context = loadJsonldContext();
+        PhaseRecorder phase = startPhase(LoadPhase.PARSE);
+        JsonLdOptions options = new JsonLdOptions();
+        Context activeContext = context == null ? new Context(options) : new Context(options).parse(context);
+        List<List<Object>> documents = mapFiles(files, (f) -> {
+            phase.addBytesRead(Files.size(f));
+            List<Object> expanded = new ArrayList<>();
+            // the @context of the file is replaced by the processed context
+            JsonNodeReader.read(f, context != null, (node) -> expanded.addAll(CIMLoader.expand(f, node, activeContext, options)));
+            return expanded;
+        }, phase);
+        phase.addDocuments(documents.size());
+        phase.finish(listeners);
+        return documents;
     }
 
     // Loads the paths for the files required for the requested level
     public List<Path> getSchemaFiles() throws IOException {
-        return Files.walk(cimDirectory)
-                .filter(f -> CIMLoader.mustLoad(f, useCase))
-                .collect(Collectors.toList());
+        PhaseRecorder phase = startPhase(LoadPhase.WALK);
+        List<Path> all;
+        try (Stream<Path> paths = Files.walk(cimDirectory)) {
+            all = paths.filter(f -> f.toString().endsWith(".jsonld")).collect(Collectors.toList());
+        }
+        List<Path> files = all.stream().filter(f -> CIMLoader.mustLoad(f, useCase)).collect(Collectors.toList());
+        phase.addDocuments(files.size());
+        phase.finish(listeners);
+
+        if (!hasSelection()) {
+            return files;
+        }
+        DistributionSelection selection = new DistributionSelection(cimDirectory, loadJsonldContext());
+        phase = startPhase(LoadPhase.SELECT);
+        files = selection.select(all, files, subjectAreas, entityGroups);
+        phase.addBytesRead(selection.getBytesScanned());
+        phase.addDocuments(selection.getFilesScanned());
+        phase.finish(listeners);
+        return files;
     }
 
     /**
@@ -91,35 +403,143 @@ public class CIMLoader {
      * @throws IOException
      */
     public Object loadJsonldContext() throws IOException {
-        try {
-            Path contextPath = cimDirectory.resolve("./src/context.jsonld");
-            return JsonUtils.fromInputStream(new FileInputStream(contextPath.toFile()));
-        } catch (FileNotFoundException e) {
-            Path contextPath = cimDirectory.resolve("./context.jsonld");
-            if (contextPath.toFile().exists()) {
-                return JsonUtils.fromInputStream(new FileInputStream(contextPath.toFile()));
-            }
+        Path contextPath = contextPath();
+        if (contextPath == null) {
+            return null;
+        }
+        PhaseRecorder phase = startPhase(LoadPhase.CONTEXT);
+        Object context = JsonNodeReader.readObject(contextPath);
+        phase.addBytesRead(Files.size(contextPath));
+        phase.addDocuments(1);
+        phase.finish(listeners);
+        return context;
+    }
+
+    // Location of the @context file in the distribution, null if there is none
+    Path contextPath() {
+        Path contextPath = cimDirectory.resolve("./src/context.jsonld");
+        if (contextPath.toFile().exists()) {
+            return contextPath;
+        }
+        contextPath = cimDirectory.resolve("./context.jsonld");
+        if (contextPath.toFile().exists()) {
+            return contextPath;
         }
         return null;
     }
 
+    private static Path defaultSnapshotDirectory() {
+        String snapshots = System.getProperty("cim.snapshots");
+        return snapshots == null || snapshots.isEmpty() ? null : Paths.get(snapshots);
+    }
+
+    /**
+     * Applies a task to every file, using up to {@link #parallelism} threads.
+     * Results keep the order of the input files. If any of the files fails, an IOException is thrown listing
+     * every failed file, with the individual errors attached as suppressed exceptions.
+     * @param files
+     * @param task
+     * @param phase receives the allocations made by the worker threads
+     * @return
+     * @throws IOException
+     */
+    private <T> List<T> mapFiles(List<Path> files, FileTask<T> task, PhaseRecorder phase) throws IOException {
+        List<T> results = new ArrayList<>(files.size());
+        List<IOException> failures = new ArrayList<>();
+        if (parallelism == 1 || files.size() < 2) {
+            for (Path f : files) {
+                try {
+                    results.add(task.apply(f));
+                } catch (IOException e) {
+                    failures.add(e);
+                }
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, files.size()));
+            try {
+                List<Future<T>> futures = new ArrayList<>(files.size());
+                for (Path f : files) {
+                    futures.add(executor.submit(() -> {
+                        long allocated = PhaseRecorder.allocatedBytes();
+                        try {
+                            return task.apply(f);
+                        } finally {
+                            if (allocated >= 0) {
+                                phase.addOtherThreadAllocated(PhaseRecorder.allocatedBytes() - allocated);
+                            }
+                        }
+                    }));
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        results.add(futures.get(i).get());
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        failures.add(cause instanceof IOException ? (IOException) cause : new IOException("Error loading " + files.get(i), cause));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading " + cimDirectory, e);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            StringBuilder message = new StringBuilder("Failed to load " + failures.size() + " of " + files.size() + " files:");
+            for (IOException failure : failures) {
+                message.append("\n  ").append(failure.getMessage());
+            }
+            IOException error = new IOException(message.toString());
+            failures.forEach(error::addSuppressed);
+            throw error;
+        }
+        return results;
+    }
+
+    // Work done over each of the files of the distribution
+    private interface FileTask<T> {
+        T apply(Path file) throws IOException;
+    }
+
     /**
      * Replaces the @context in a JSON-LD file from the distribution (pointing to http://cim.org/context.jsonld) with
      * the actual value of the context, since we are not publishing the context yet.
      * @param f
      * @param context
      * @return
+     * @throws IOException if the file cannot be read or does not contain a JSON object
      */
-    private static Object file2JSON(Path f, Object context) {
+    private static Map<String, Object> file2JSON(Path f, Object context) throws IOException {
+        Map<String, Object> json = JsonNodeReader.readObject(f);
+        if (context != null) {
+            json.put("@context", context); // update the context
+        }
+        return json;
+    }
+
+    /**
+     * Expands a document as an element of the top level @graph of the distribution, the same way it is expanded when
+     * all the documents are processed together
+     * @param f
+     * @param json
+     * @param activeContext
+     * @param options
+     * @return the expanded nodes
+     * @throws IOException if the document is not valid JSON-LD
+     */
+    private static List<Object> expand(Path f, Map<String, Object> json, Context activeContext, JsonLdOptions options) throws IOException {
+        Object expanded;
         try {
-            LinkedHashMap<String, Object> json = (LinkedHashMap<String, Object>) JsonUtils.fromInputStream(new FileInputStream(f.toFile()));
-            if (context != null) {
-                json.put("@context", context); // update the context
-            }
-            return json;
-        } catch (IOException e) {
-            return new HashMap<String,Object>();
+            expanded = new JsonLdApi(options).expand(activeContext, JsonLdConsts.GRAPH, json);
+        } catch (JsonLdError e) {
+            throw new IOException("Error expanding " + f + ": " + e.getMessage(), e);
+        }
+        if (expanded instanceof List) {
+            return (List<Object>) expanded;
         }
+        return expanded == null ? Collections.emptyList() : Collections.singletonList(expanded);
     }
 
 }
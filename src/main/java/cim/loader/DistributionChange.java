@@ -0,0 +1,77 @@
+package cim.loader;
+
+/**
+ * One difference between two versions of the distribution, found by {@link DistributionDiff}.
+ * Added and removed elements have no attribute. Changed elements have one change for every attribute with different
+ * values, with all the values of the attribute in each version.
+ */
+public class DistributionChange {
+
+    public enum Type {
+        ADDED,
+        REMOVED,
+        CHANGED
+    }
+
+    public enum Element {
+        // classes and node shapes, without their property shapes
+        SHAPE,
+        // property shapes, identified by the shape declaring them and their path
+        PROPERTY_SHAPE,
+        // rdf:Property definitions
+        PROPERTY
+    }
+
+    private final Type type;
+    private final Element element;
+    private final String id;
+    private final String attribute;
+    private final String before;
+    private final String after;
+
+    public DistributionChange(Type type, Element element, String id, String attribute, String before, String after) {
+        this.type = type;
+        this.element = element;
+        this.id = id;
+        this.attribute = attribute;
+        this.before = before;
+        this.after = after;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Element getElement() {
+        return element;
+    }
+
+    // Compact id of the element, "shape path" for property shapes
+    public String getId() {
+        return id;
+    }
+
+    // Compact URI of the changed attribute, null for added and removed elements
+    public String getAttribute() {
+        return attribute;
+    }
+
+    // Values of the attribute in the old version, empty if there were none
+    public String getBefore() {
+        return before;
+    }
+
+    // Values of the attribute in the new version, empty if there are none
+    public String getAfter() {
+        return after;
+    }
+
+    // Tab separated fields: type, element, id, attribute, before and after
+    @Override
+    public String toString() {
+        return type + "\t" + element + "\t" + id + "\t" +
+                (attribute == null ? "" : attribute) + "\t" +
+                (before == null ? "" : before) + "\t" +
+                (after == null ? "" : after);
+    }
+}
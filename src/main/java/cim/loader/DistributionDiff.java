@@ -0,0 +1,325 @@
+package cim.loader;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Structural diff between two versions of the distribution.
+ * Every shape, property shape and property of each version gets a signature, a hash of its description that does not
+ * depend on blank node labels or on the order of the triples:
+ * <ul>
+ *     <li>blank nodes are hashed by their own description, recursively, so nested shapes and lists compare by
+ *     structure</li>
+ *     <li>the members of <code>sh:and</code> lists are sorted, since the order of a conjunction does not matter</li>
+ *     <li>shapes are hashed without their <code>sh:property</code> values, property shapes are compared on their own,
+ *     identified by the shape declaring them and their <code>sh:path</code>. Property shapes of the blank shapes in the
+ *     <code>sh:and</code> list of a shape belong to that shape, as in <code>cim:schemaProperty</code></li>
+ * </ul>
+ * Every blank node is hashed once, so computing the signatures is linear in the number of triples, and the versions are
+ * compared with a lookup per element. Attributes are only compared for the elements whose signature changed.
+ */
+public class DistributionDiff {
+
+    private DistributionDiff() {
+    }
+
+    /**
+     * Loads two versions and compares them
+     * @param before loader for the old version
+     * @param after loader for the new version, usually with the same use case
+     * @return the changes, sorted by element and id
+     * @throws IOException
+     */
+    public static List<DistributionChange> compare(CIMLoader before, CIMLoader after) throws IOException {
+        return compare(load(before), load(after));
+    }
+
+    /**
+     * Compares the graphs of two versions
+     * @param before
+     * @param after
+     * @return the changes, sorted by element and id
+     */
+    public static List<DistributionChange> compare(Graph before, Graph after) {
+        Signatures old = new Signatures(before);
+        Signatures current = new Signatures(after);
+
+        List<DistributionChange> changes = new ArrayList<>();
+        for (DistributionChange.Element element : DistributionChange.Element.values()) {
+            Map<String, Entry> oldEntries = old.entries.get(element);
+            Map<String, Entry> currentEntries = current.entries.get(element);
+            for (Map.Entry<String, Entry> entry : oldEntries.entrySet()) {
+                Entry other = currentEntries.get(entry.getKey());
+                if (other == null) {
+                    changes.add(new DistributionChange(DistributionChange.Type.REMOVED, element, entry.getKey(), null, null, null));
+                } else if (!other.signature.equals(entry.getValue().signature)) {
+                    attributeChanges(element, entry.getKey(), old, entry.getValue(), current, other, changes);
+                }
+            }
+            for (String id : currentEntries.keySet()) {
+                if (!oldEntries.containsKey(id)) {
+                    changes.add(new DistributionChange(DistributionChange.Type.ADDED, element, id, null, null, null));
+                }
+            }
+        }
+        changes.sort(Comparator.comparing(DistributionChange::getElement)
+                .thenComparing(DistributionChange::getId)
+                .thenComparing((change) -> change.getAttribute() == null ? "" : change.getAttribute()));
+        return changes;
+    }
+
+    // Loads the triples of a version into a plain in-memory graph
+    static Graph load(CIMLoader loader) throws IOException {
+        Graph graph = GraphFactory.createGraphMem();
+        loader.loadRDF(StreamRDFLib.graph(graph));
+        return graph;
+    }
+
+    // Compares the values of every attribute of an element whose signature changed
+    private static void attributeChanges(DistributionChange.Element element, String id,
+                                         Signatures old, Entry oldEntry, Signatures current, Entry currentEntry,
+                                         List<DistributionChange> changes) {
+        SortedMap<String, SortedSet<String>> before = old.attributes(oldEntry);
+        SortedMap<String, SortedSet<String>> after = current.attributes(currentEntry);
+        Set<String> attributes = new TreeSet<>(before.keySet());
+        attributes.addAll(after.keySet());
+        int found = 0;
+        for (String attribute : attributes) {
+            SortedSet<String> beforeValues = before.getOrDefault(attribute, new TreeSet<>());
+            SortedSet<String> afterValues = after.getOrDefault(attribute, new TreeSet<>());
+            if (!beforeValues.equals(afterValues)) {
+                changes.add(new DistributionChange(DistributionChange.Type.CHANGED, element, id, attribute,
+                        String.join(", ", beforeValues), String.join(", ", afterValues)));
+                found++;
+            }
+        }
+        if (found == 0) {
+            // only the structure of nested blank nodes changed in a way the displayed values do not show
+            changes.add(new DistributionChange(DistributionChange.Type.CHANGED, element, id, null,
+                    oldEntry.signature, currentEntry.signature));
+        }
+    }
+
+    // An element of a version with its signature
+    private static class Entry {
+        final Node node;
+        final boolean shape;
+        final String signature;
+
+        Entry(Node node, boolean shape, String signature) {
+            this.node = node;
+            this.shape = shape;
+            this.signature = signature;
+        }
+    }
+
+    // Signatures of all the elements of a version
+    private static class Signatures {
+        private static final String CYCLE = "cycle";
+
+        final Graph graph;
+        final Map<DistributionChange.Element, Map<String, Entry>> entries = new EnumMap<>(DistributionChange.Element.class);
+        private final Map<Node, String> blankHashes = new HashMap<>();
+        private final MessageDigest digest;
+
+        Signatures(Graph graph) {
+            this.graph = graph;
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e); // every JVM provides SHA-256
+            }
+            for (DistributionChange.Element element : DistributionChange.Element.values()) {
+                entries.put(element, new LinkedHashMap<>());
+            }
+
+            Set<Node> shapes = new LinkedHashSet<>();
+            ShapeGraph.forEach(graph, Node.ANY, RDF.type.asNode(), RDFS.Class.asNode(), (t) -> shapes.add(t.getSubject()));
+            ShapeGraph.forEach(graph, Node.ANY, RDF.type.asNode(), ShapeGraph.SH_NODE_SHAPE, (t) -> shapes.add(t.getSubject()));
+            ShapeGraph.forEach(graph, Node.ANY, ShapeGraph.SH_PROPERTY, Node.ANY, (t) -> shapes.add(t.getSubject()));
+            ShapeGraph.forEach(graph, Node.ANY, ShapeGraph.SH_AND, Node.ANY, (t) -> shapes.add(t.getSubject()));
+            for (Node shape : shapes) {
+                // blank shapes are part of the signature of the shapes using them
+                if (shape.isURI()) {
+                    String id = id(shape);
+                    entries.get(DistributionChange.Element.SHAPE).put(id, new Entry(shape, true, describe(shape, true)));
+                    addPropertyShapes(id, shape);
+                }
+            }
+
+            ShapeGraph.forEach(graph, Node.ANY, RDF.type.asNode(), RDF.Property.asNode(), (t) -> {
+                if (t.getSubject().isURI()) {
+                    entries.get(DistributionChange.Element.PROPERTY).put(id(t.getSubject()),
+                            new Entry(t.getSubject(), false, describe(t.getSubject(), false)));
+                }
+            });
+        }
+
+        // Property shapes declared by a shape or the blank shapes in its sh:and lists, recursively, identified by their path
+        private void addPropertyShapes(String shapeId, Node shape) {
+            Set<Node> parts = new LinkedHashSet<>();
+            collectParts(shape, parts);
+            Map<String, List<Entry>> byPath = new TreeMap<>();
+            for (Node part : parts) {
+                ShapeGraph.forEach(graph, part, ShapeGraph.SH_PROPERTY, Node.ANY, (t) -> {
+                    Node property = t.getObject();
+                    Entry entry = new Entry(property, false, property.isBlank() ? blankHash(property) : describe(property, false));
+                    Node path = ShapeGraph.single(graph, property, ShapeGraph.SH_PATH);
+                    String key = shapeId + " " + (path == null ? "_:" + entry.signature : display(path));
+                    byPath.computeIfAbsent(key, (k) -> new ArrayList<>()).add(entry);
+                });
+            }
+            Map<String, Entry> propertyShapes = entries.get(DistributionChange.Element.PROPERTY_SHAPE);
+            for (Map.Entry<String, List<Entry>> path : byPath.entrySet()) {
+                List<Entry> shapes = path.getValue();
+                // repeated paths are told apart by the order of their signatures
+                shapes.sort(Comparator.comparing((e) -> e.signature));
+                for (int i = 0; i < shapes.size(); i++) {
+                    propertyShapes.put(i == 0 ? path.getKey() : path.getKey() + " #" + (i + 1), shapes.get(i));
+                }
+            }
+        }
+
+        // A shape and the blank members of its sh:and lists, whose property shapes belong to it
+        private void collectParts(Node shape, Set<Node> parts) {
+            if (!parts.add(shape)) {
+                return;
+            }
+            ShapeGraph.forEach(graph, shape, ShapeGraph.SH_AND, Node.ANY, (t) -> {
+                List<Node> members = ShapeGraph.list(graph, t.getObject());
+                if (members != null) {
+                    for (Node member : members) {
+                        if (member.isBlank()) {
+                            collectParts(member, parts);
+                        }
+                    }
+                }
+            });
+        }
+
+        /**
+         * Hash of the description of a node
+         * @param node
+         * @param shape leaves out the sh:property values, compared as property shapes
+         * @return
+         */
+        private String describe(Node node, boolean shape) {
+            List<String> statements = new ArrayList<>();
+            ShapeGraph.forEach(graph, node, Node.ANY, Node.ANY, (t) -> {
+                if (!shape || !t.getPredicate().equals(ShapeGraph.SH_PROPERTY)) {
+                    statements.add(t.getPredicate().getURI() + " " + value(t.getPredicate(), t.getObject()));
+                }
+            });
+            statements.sort(null);
+            return hash(String.join("\n", statements));
+        }
+
+        // Canonical form of the value of a statement
+        private String value(Node predicate, Node object) {
+            if (object.isURI()) {
+                return "<" + object.getURI() + ">";
+            } else if (object.isLiteral()) {
+                return "\"" + object.getLiteralLexicalForm() + "\"^^<" + object.getLiteralDatatypeURI() + ">@" + object.getLiteralLanguage();
+            } else if (ShapeGraph.SH_AND.equals(predicate)) {
+                List<Node> members = ShapeGraph.list(graph, object);
+                if (members != null) {
+                    List<String> values = new ArrayList<>();
+                    for (Node member : members) {
+                        // the property shapes of blank members are compared as property shapes of the shape
+                        values.add(member.isBlank() ? "_:" + describe(member, true) : value(null, member));
+                    }
+                    values.sort(null);
+                    return "and(" + hash(String.join("\n", values)) + ")";
+                }
+            }
+            return "_:" + blankHash(object);
+        }
+
+        // Hash of a blank node, computed once
+        private String blankHash(Node blank) {
+            String hash = blankHashes.get(blank);
+            if (hash == null) {
+                blankHashes.put(blank, CYCLE);
+                hash = describe(blank, false);
+                blankHashes.put(blank, hash);
+            }
+            return hash;
+        }
+
+        // Values of every attribute of an element, as displayed in the changes
+        SortedMap<String, SortedSet<String>> attributes(Entry entry) {
+            SortedMap<String, SortedSet<String>> attributes = new TreeMap<>();
+            ShapeGraph.forEach(graph, entry.node, Node.ANY, Node.ANY, (t) -> {
+                if (!entry.shape || !t.getPredicate().equals(ShapeGraph.SH_PROPERTY)) {
+                    attributes.computeIfAbsent(display(t.getPredicate()), (k) -> new TreeSet<>())
+                            .add(displayValue(t.getPredicate(), t.getObject()));
+                }
+            });
+            return attributes;
+        }
+
+        private String displayValue(Node predicate, Node object) {
+            if (object.isBlank()) {
+                List<Node> members = ShapeGraph.list(graph, object);
+                if (members != null) {
+                    List<String> values = new ArrayList<>();
+                    for (Node member : members) {
+                        values.add(displayValue(null, member));
+                    }
+                    if (ShapeGraph.SH_AND.equals(predicate)) {
+                        values.sort(null);
+                    }
+                    return "(" + String.join(" ", values) + ")";
+                }
+                return "_:" + blankHash(object).substring(0, 12);
+            }
+            return display(object);
+        }
+
+        private String hash(String canonical) {
+            byte[] bytes = digest.digest(canonical.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((bytes[i] >> 4) & 0xf, 16)).append(Character.forDigit(bytes[i] & 0xf, 16));
+            }
+            return hex.toString();
+        }
+    }
+
+    // Compact id of a node, with the common prefixes
+    private static String id(Node node) {
+        return ShapeGraph.PREFIXES.shortForm(node.getURI());
+    }
+
+    private static String display(Node node) {
+        if (node.isURI()) {
+            return id(node);
+        } else if (node.isLiteral()) {
+            String language = node.getLiteralLanguage();
+            return node.getLiteralLexicalForm() + (language.isEmpty() ? "" : "@" + language);
+        }
+        return node.toString();
+    }
+}
@@ -0,0 +1,304 @@
+package cim.loader;
+
+import com.github.jsonldjava.utils.JsonUtils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Writes a synthetic CIM distribution of any size, with the same layout and structure as the real one, to test and
+ * benchmark the loader and the queries at scale:
+ * <pre>
+ * src/context.jsonld
+ * src/about.jsonld
+ * src/subjectAreas/&lt;subject area&gt;/about.jsonld
+ * src/subjectAreas/&lt;subject area&gt;/entityGroups/&lt;entity group&gt;/concepts.jsonld
+ * src/subjectAreas/&lt;subject area&gt;/entityGroups/&lt;entity group&gt;/schema.jsonld
+ * </pre>
+ * Classes in an entity group inherit from the previous class in chains of up to <code>andDepth</code> levels, through
+ * <code>rdfs:subClassOf</code> and <code>sh:and</code> in the class and in its schema.
+ * Some properties reference a random class of the distribution with <code>sh:node</code>.
+ * The output only depends on the settings, so the same distribution is generated every time.
+ */
+public class DistributionGenerator {
+
+    private static final String[] DATATYPES = {"xsd:string", "xsd:integer", "xsd:boolean", "xsd:dateTime", "xsd:decimal"};
+
+    private int subjectAreas = 10;
+    private int entityGroups = 4;
+    private int classes = 5;
+    private int properties = 8;
+    private int andDepth = 2;
+    private int referenceEvery = 4;
+    private long seed = 42;
+
+    /**
+     * Generator for a distribution with <code>scale</code> times the subject areas of the default one, which is
+     * roughly the size of the real distribution
+     * @param scale
+     * @return
+     */
+    public static DistributionGenerator scaled(int scale) {
+        if (scale < 1) {
+            throw new IllegalArgumentException("Scale must be at least 1: " + scale);
+        }
+        DistributionGenerator generator = new DistributionGenerator();
+        generator.setSubjectAreas(generator.subjectAreas * scale);
+        return generator;
+    }
+
+    // Number of subject areas
+    public void setSubjectAreas(int subjectAreas) {
+        this.subjectAreas = positive("subjectAreas", subjectAreas);
+    }
+
+    // Number of entity groups in every subject area
+    public void setEntityGroups(int entityGroups) {
+        this.entityGroups = positive("entityGroups", entityGroups);
+    }
+
+    // Number of classes in every entity group
+    public void setClasses(int classes) {
+        this.classes = positive("classes", classes);
+    }
+
+    // Number of properties declared by every class, not counting inherited ones
+    public void setProperties(int properties) {
+        this.properties = positive("properties", properties);
+    }
+
+    // Maximum number of sh:and levels above a class, 0 for no inheritance
+    public void setAndDepth(int andDepth) {
+        if (andDepth < 0) {
+            throw new IllegalArgumentException("andDepth must not be negative: " + andDepth);
+        }
+        this.andDepth = andDepth;
+    }
+
+    // Every n-th property of a class is a reference to another class, 0 for no references
+    public void setReferenceEvery(int referenceEvery) {
+        if (referenceEvery < 0) {
+            throw new IllegalArgumentException("referenceEvery must not be negative: " + referenceEvery);
+        }
+        this.referenceEvery = referenceEvery;
+    }
+
+    // Seed choosing the classes referenced by properties
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Writes the distribution
+     * @param directory root of the distribution, to be passed to {@link CIMLoader}
+     * @return number of files written
+     * @throws IOException
+     */
+    public int generate(Path directory) throws IOException {
+        Path src = directory.resolve("src");
+        Random random = new Random(seed);
+        int totalClasses = subjectAreas * entityGroups * classes;
+        int files = 0;
+
+        write(src.resolve("context.jsonld"), context());
+        write(src.resolve("about.jsonld"), document(
+                "@id", "cim",
+                "name", "CIM",
+                "description", "Synthetic distribution"));
+        files += 2;
+
+        for (int a = 0; a < subjectAreas; a++) {
+            String subjectArea = subjectAreaName(a);
+            Path subjectAreaDirectory = src.resolve("subjectAreas").resolve(subjectArea);
+            List<String> groups = new ArrayList<>();
+            for (int g = 0; g < entityGroups; g++) {
+                groups.add(entityGroupName(a, g) + "Group");
+            }
+            write(subjectAreaDirectory.resolve("about.jsonld"), document(
+                    "@id", subjectArea + "Area",
+                    "@type", "SubjectArea",
+                    "name", subjectArea,
+                    "description", subjectArea + " subject area",
+                    "entityGroups", groups));
+            files++;
+
+            for (int g = 0; g < entityGroups; g++) {
+                String entityGroup = entityGroupName(a, g);
+                List<Object> classList = new ArrayList<>();
+                List<Object> propertyList = new ArrayList<>();
+                List<Object> schemaList = new ArrayList<>();
+
+                for (int c = 0; c < classes; c++) {
+                    String className = className(a, g, c);
+                    String parent = andDepth > 0 && c % (andDepth + 1) != 0 ? className(a, g, c - 1) : null;
+
+                    List<Object> propertyShapes = new ArrayList<>();
+                    List<Object> schemaPropertyShapes = new ArrayList<>();
+                    for (int p = 0; p < properties; p++) {
+                        String property = className + "Property" + p;
+                        String referenced = referenceEvery > 0 && p % referenceEvery == referenceEvery - 1 ?
+                                className(random.nextInt(totalClasses)) : null;
+                        String datatype = referenced != null ? "cim:id" : DATATYPES[p % DATATYPES.length];
+                        int minCount = p == 0 ? 1 : 0;
+
+                        Map<String, Object> shape = document(
+                                "@id", className + "/" + property,
+                                "path", property,
+                                "datatype", datatype);
+                        Map<String, Object> schemaShape = document(
+                                "path", property,
+                                "datatype", datatype);
+                        if (referenced != null) {
+                            shape.put("node", referenced);
+                            schemaShape.put("node", referenced);
+                        }
+                        shape.put("minCount", minCount);
+                        shape.put("maxCount", 1);
+                        schemaShape.put("minCount", minCount);
+                        schemaShape.put("maxCount", 1);
+                        propertyShapes.add(shape);
+                        schemaPropertyShapes.add(schemaShape);
+
+                        propertyList.add(document(
+                                "@id", property,
+                                "@type", "Property",
+                                "name", property,
+                                "description", "Property " + p + " of " + className,
+                                "domain", className));
+                    }
+
+                    Map<String, Object> classShape = document(
+                            "@id", className,
+                            "@type", Arrays.asList("Class", "NodeShape"),
+                            "name", className,
+                            "description", "Class " + className,
+                            "property", propertyShapes);
+                    Map<String, Object> schema = document(
+                            "@id", className + "Schema",
+                            "@type", "NodeShape",
+                            "targetClass", className);
+                    if (parent != null) {
+                        classShape.put("subClassOf", parent);
+                        classShape.put("and", Arrays.asList(parent));
+                        schema.put("and", Arrays.asList(parent + "Schema", document("property", schemaPropertyShapes)));
+                    } else {
+                        schema.put("property", schemaPropertyShapes);
+                    }
+                    classList.add(classShape);
+                    schemaList.add(schema);
+                }
+
+                Path groupDirectory = subjectAreaDirectory.resolve("entityGroups").resolve(entityGroup);
+                write(groupDirectory.resolve("concepts.jsonld"), document(
+                        "@id", entityGroup + "Group",
+                        "@type", "EntityGroup",
+                        "name", entityGroup,
+                        "description", entityGroup + " entity group",
+                        "subjectArea", subjectArea,
+                        "classes", classList,
+                        "properties", propertyList));
+                write(groupDirectory.resolve("schema.jsonld"), document(
+                        "@id", entityGroup + "Schemas",
+                        "schemas", schemaList));
+                files += 2;
+            }
+        }
+        return files;
+    }
+
+    private String className(int index) {
+        int c = index % classes;
+        int g = (index / classes) % entityGroups;
+        int a = index / (classes * entityGroups);
+        return className(a, g, c);
+    }
+
+    private static String subjectAreaName(int a) {
+        return "Area" + a;
+    }
+
+    private static String entityGroupName(int a, int g) {
+        return subjectAreaName(a) + "Group" + g;
+    }
+
+    private static String className(int a, int g, int c) {
+        return entityGroupName(a, g) + "Class" + c;
+    }
+
+    // The @context, with the same terms as the real distribution
+    private static Map<String, Object> context() {
+        String cim = "http://cloudinformationmodel.org/model/";
+        return document(
+                "@base", cim,
+                "cim", cim,
+                "rdf", "http://www.w3.org/1999/02/22-rdf-syntax-ns#",
+                "rdfs", "http://www.w3.org/2000/01/rdf-schema#",
+                "sh", "http://www.w3.org/ns/shacl#",
+                "xsd", "http://www.w3.org/2001/XMLSchema#",
+                "SubjectArea", "cim:SubjectArea",
+                "EntityGroup", "cim:EntityGroup",
+                "Class", "rdfs:Class",
+                "Property", "rdf:Property",
+                "NodeShape", "sh:NodeShape",
+                "PropertyShape", "sh:PropertyShape",
+                "name", "rdfs:label",
+                "description", "rdfs:comment",
+                "entityGroups", reference("cim:entityGroup"),
+                "classes", reference("cim:classes"),
+                "properties", reference("cim:properties"),
+                "subjectArea", "cim:subjectArea",
+                "domain", reference("rdfs:domain"),
+                "subClassOf", reference("rdfs:subClassOf"),
+                "targetClass", reference("sh:targetClass"),
+                "property", "sh:property",
+                "path", reference("sh:path"),
+                "datatype", reference("sh:datatype"),
+                "node", reference("sh:node"),
+                "minCount", "sh:minCount",
+                "maxCount", "sh:maxCount",
+                "schemas", "cim:schemas",
+                "and", document("@id", "sh:and", "@container", "@list", "@type", "@id"));
+    }
+
+    private static Map<String, Object> reference(String id) {
+        return document("@id", id, "@type", "@id");
+    }
+
+    // JSON object from a list of keys and values, in order
+    private static Map<String, Object> document(Object... keysAndValues) {
+        Map<String, Object> document = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            document.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return document;
+    }
+
+    private static void write(Path file, Map<String, Object> json) throws IOException {
+        Files.createDirectories(file.getParent());
+        if (!file.getFileName().toString().equals("context.jsonld")) {
+            Map<String, Object> document = new LinkedHashMap<>();
+            document.put("@context", "http://cloudinformationmodel.org/context.jsonld");
+            document.putAll(json);
+            json = document;
+        }
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            JsonUtils.writePrettyPrint(writer, json);
+        }
+    }
+
+    private static int positive(String name, int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be at least 1: " + value);
+        }
+        return value;
+    }
+}
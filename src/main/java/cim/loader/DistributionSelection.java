@@ -0,0 +1,231 @@
+package cim.loader;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Chooses the files of the distribution holding a selection of subject areas and entity groups, plus the entity
+ * groups defining the classes and shapes they reference, transitively, through <code>sh:node</code>,
+ * <code>rdfs:subClassOf</code> and <code>sh:and</code>.
+ * Subject areas and entity groups are named after their directories:
+ * <pre>
+ * subjectAreas/&lt;subject area&gt;/entityGroups/&lt;entity group&gt;/
+ * </pre>
+ * The files of the entity groups are only tokenized to collect the ids they define and the ids they reference,
+ * without building or expanding the documents. Terms and compact IRIs are resolved with the terms, prefixes and
+ * <code>@base</code> of the shared @context, which is enough to match references to definitions.
+ * Files outside of the subject areas are always selected.
+ */
+class DistributionSelection {
+
+    private static final String SUBJECT_AREAS = "subjectAreas";
+    private static final String ENTITY_GROUPS = "entityGroups";
+    private static final Set<String> REFERENCES = new HashSet<>(Arrays.asList(
+            "http://www.w3.org/ns/shacl#node",
+            "http://www.w3.org/2000/01/rdf-schema#subClassOf",
+            "http://www.w3.org/ns/shacl#and"));
+
+    private final Path cimDirectory;
+    private final JsonLDContext context;
+    private final Map<String, Boolean> referenceKeys = new HashMap<>();
+
+    private long bytesScanned = 0;
+    private int filesScanned = 0;
+
+    /**
+     * @param cimDirectory root of the distribution
+     * @param context the @context of the distribution, as loaded by {@link CIMLoader#loadJsonldContext()}
+     */
+    DistributionSelection(Path cimDirectory, Object context) {
+        this.cimDirectory = cimDirectory;
+        this.context = new JsonLDContext(context);
+    }
+
+    long getBytesScanned() {
+        return bytesScanned;
+    }
+
+    int getFilesScanned() {
+        return filesScanned;
+    }
+
+    /**
+     * Selects files of the distribution
+     * @param files every JSON-LD file in the distribution, the index of definitions is built from all of them
+     * @param loadable the files of the loaded level, the result is a subset of them in the same order
+     * @param subjectAreas names of the subject areas to load
+     * @param entityGroups names of the entity groups to load, in any subject area
+     * @return
+     * @throws IOException
+     * @throws IllegalArgumentException if a subject area or entity group does not exist
+     */
+    List<Path> select(List<Path> files, List<Path> loadable, Collection<String> subjectAreas, Collection<String> entityGroups) throws IOException {
+        // files of every entity group, by "subject area/entity group"
+        Map<String, List<Path>> groups = new LinkedHashMap<>();
+        Set<String> knownSubjectAreas = new HashSet<>();
+        for (Path file : files) {
+            String[] location = location(file);
+            if (location[0] != null) {
+                knownSubjectAreas.add(location[0]);
+            }
+            if (location[1] != null) {
+                groups.computeIfAbsent(location[0] + "/" + location[1], (k) -> new ArrayList<>()).add(file);
+            }
+        }
+
+        Set<String> selected = new LinkedHashSet<>();
+        List<String> unknown = new ArrayList<>();
+        for (String subjectArea : subjectAreas) {
+            if (!knownSubjectAreas.contains(subjectArea)) {
+                unknown.add("subject area " + subjectArea);
+            }
+            groups.keySet().stream().filter(g -> g.startsWith(subjectArea + "/")).forEach(selected::add);
+        }
+        for (String entityGroup : entityGroups) {
+            boolean found = false;
+            for (String group : groups.keySet()) {
+                if (group.endsWith("/" + entityGroup)) {
+                    selected.add(group);
+                    found = true;
+                }
+            }
+            if (!found) {
+                unknown.add("entity group " + entityGroup);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            throw new IllegalArgumentException("Not found in " + cimDirectory + ": " + String.join(", ", unknown));
+        }
+
+        // ids defined and referenced by every entity group
+        Map<String, Set<String>> definers = new HashMap<>();
+        Map<String, Set<String>> references = new HashMap<>();
+        for (Map.Entry<String, List<Path>> group : groups.entrySet()) {
+            Set<String> defined = new HashSet<>();
+            Set<String> referenced = new HashSet<>();
+            for (Path file : group.getValue()) {
+                scan(file, defined, referenced);
+            }
+            for (String id : defined) {
+                definers.computeIfAbsent(id, (k) -> new LinkedHashSet<>()).add(group.getKey());
+            }
+            references.put(group.getKey(), referenced);
+        }
+
+        // closure over the references
+        Deque<String> pending = new ArrayDeque<>(selected);
+        while (!pending.isEmpty()) {
+            for (String id : references.get(pending.pop())) {
+                for (String group : definers.getOrDefault(id, Collections.emptySet())) {
+                    if (selected.add(group)) {
+                        pending.push(group);
+                    }
+                }
+            }
+        }
+
+        Set<String> selectedSubjectAreas = new HashSet<>(subjectAreas);
+        for (String group : selected) {
+            selectedSubjectAreas.add(group.substring(0, group.indexOf('/')));
+        }
+        List<Path> result = new ArrayList<>();
+        for (Path file : loadable) {
+            String[] location = location(file);
+            if (location[0] == null
+                    || location[1] == null && selectedSubjectAreas.contains(location[0])
+                    || location[1] != null && selected.contains(location[0] + "/" + location[1])) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    // Subject area and entity group holding a file, null when the file is not inside one
+    private String[] location(Path file) {
+        Path relative = cimDirectory.toAbsolutePath().normalize().relativize(file.toAbsolutePath().normalize());
+        String[] location = new String[2];
+        for (int i = 0; i < relative.getNameCount() - 1; i++) {
+            if (relative.getName(i).toString().equals(SUBJECT_AREAS) && i + 2 < relative.getNameCount()) {
+                location[0] = relative.getName(i + 1).toString();
+                if (relative.getName(i + 2).toString().equals(ENTITY_GROUPS) && i + 4 < relative.getNameCount()) {
+                    location[1] = relative.getName(i + 3).toString();
+                }
+                break;
+            }
+        }
+        return location;
+    }
+
+    // Collects the ids of the nodes described in a file and the ids it references
+    private void scan(Path file, Set<String> defined, Set<String> referenced) throws IOException {
+        JsonNodeReader.parse(file, (parser) -> {
+            JsonToken token = parser.nextToken();
+            if (token != null) {
+                scanValue(parser, token, null, defined, referenced);
+            }
+        });
+        bytesScanned += file.toFile().length();
+        filesScanned++;
+    }
+
+    private void scanValue(JsonParser parser, JsonToken token, String key, Set<String> defined, Set<String> referenced) throws IOException {
+        if (token == JsonToken.START_OBJECT) {
+            scanObject(parser, key, defined, referenced);
+        } else if (token == JsonToken.START_ARRAY) {
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                scanValue(parser, token, key, defined, referenced);
+            }
+        } else if (token == JsonToken.VALUE_STRING && isReference(key)) {
+            referenced.add(context.expand(parser.getText(), false));
+        }
+    }
+
+    private void scanObject(JsonParser parser, String key, Set<String> defined, Set<String> referenced) throws IOException {
+        String id = null;
+        boolean description = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (name.equals("@context")) {
+                parser.skipChildren();
+            } else if (name.equals("@id") && token == JsonToken.VALUE_STRING) {
+                id = context.expand(parser.getText(), false);
+            } else {
+                description = true;
+                // values of @list and @set belong to the enclosing key
+                String valueKey = name.equals("@list") || name.equals("@set") ? key : name;
+                scanValue(parser, token, valueKey, defined, referenced);
+            }
+        }
+        if (id != null) {
+            if (description) {
+                defined.add(id);
+            } else if (isReference(key)) {
+                referenced.add(id);
+            }
+        }
+    }
+
+    private boolean isReference(String key) {
+        if (key == null) {
+            return false;
+        }
+        return referenceKeys.computeIfAbsent(key, (k) -> REFERENCES.contains(context.expand(k, true)));
+    }
+}
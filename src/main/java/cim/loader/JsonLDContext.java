@@ -0,0 +1,88 @@
+package cim.loader;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Terms, prefixes and <code>@base</code> of a JSON-LD context, to expand the values written with it without going
+ * through the JSON-LD expansion algorithm. Shared by the classes reading the documents of a distribution or their
+ * graph, so they all resolve a value to the same URI.
+ */
+final class JsonLDContext {
+
+    private final Map<?, ?> terms;
+    private final URI base;
+
+    /**
+     * @param context a context, or an object with a <code>@context</code>, can be null
+     */
+    JsonLDContext(Object context) {
+        Object local = context instanceof Map && ((Map<?, ?>) context).containsKey("@context") ?
+                ((Map<?, ?>) context).get("@context") : context;
+        this.terms = local instanceof Map ? (Map<?, ?>) local : Collections.emptyMap();
+        Object base = terms.get("@base");
+        URI uri = null;
+        if (base instanceof String) {
+            try {
+                uri = URI.create((String) base);
+            } catch (IllegalArgumentException e) {
+                // ids are then compared as written
+            }
+        }
+        this.base = uri;
+    }
+
+    /**
+     * Expands a term, compact IRI or relative IRI
+     * @param value
+     * @param vocab whether the value is a key or a vocabulary term, expanded with the terms of the context, or else an
+     *              id, resolved against <code>@base</code> when it is relative
+     * @return the URI, or the value itself when the context does not expand it
+     */
+    String expand(String value, boolean vocab) {
+        if (value == null) {
+            return null;
+        }
+        for (int depth = 0; depth < 8 && vocab && terms.containsKey(value); depth++) {
+            Object id = id(terms.get(value));
+            if (!(id instanceof String) || id.equals(value)) {
+                break;
+            }
+            value = (String) id;
+        }
+        if (value.startsWith("@")) {
+            return value;
+        }
+        int colon = value.indexOf(':');
+        if (colon < 0) {
+            return vocab ? value : resolve(value);
+        }
+        // prefixes can be compact IRIs themselves
+        for (int depth = 0; depth < 8 && colon > 0; depth++) {
+            Object prefix = id(terms.get(value.substring(0, colon)));
+            if (!(prefix instanceof String) || value.startsWith("//", colon + 1)) {
+                break;
+            }
+            value = prefix + value.substring(colon + 1);
+            colon = value.indexOf(':');
+        }
+        return value;
+    }
+
+    private String resolve(String value) {
+        if (base == null) {
+            return value;
+        }
+        try {
+            return base.resolve(value).toString();
+        } catch (IllegalArgumentException e) {
+            return base + value;
+        }
+    }
+
+    // IRI of a term definition, a string or an object with an @id
+    private static Object id(Object definition) {
+        return definition instanceof Map ? ((Map<?, ?>) definition).get("@id") : definition;
+    }
+}
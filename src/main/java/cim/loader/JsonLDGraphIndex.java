@@ -0,0 +1,170 @@
+package cim.loader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index over a flattened JSON-LD graph, like the one returned by {@link CIMLoader#getJsonLDGraph()}, to extract
+ * framed trees without going through the JSON-LD framing algorithm.
+ * The nodes are indexed once by <code>@id</code> and by <code>@type</code>. Framing a type then only visits the nodes
+ * of that type and the nodes embedded in them, so its cost is proportional to the output and not to the graph.
+ * <p>
+ * Types, properties and ids can be given as URIs, as compact URIs like <code>rdf:Property</code> or as terms of the
+ * context like <code>Property</code>. The frames are in expanded form, and can be compacted with
+ * <code>JsonLdProcessor.compact</code>. They share the values of the graph, which must not be modified.
+ */
+public class JsonLDGraphIndex {
+
+    private static final String ID = "@id";
+    private static final String TYPE = "@type";
+    private static final String GRAPH = "@graph";
+    private static final String LIST = "@list";
+
+    private final Map<String, Map<String, Object>> nodesById = new HashMap<>();
+    private final Map<String, List<Map<String, Object>>> nodesByType = new HashMap<>();
+    private final JsonLDContext context;
+
+    public JsonLDGraphIndex(Object graph) {
+        this(graph, null);
+    }
+
+    /**
+     * @param graph flattened JSON-LD graph, as a list of nodes or an object with a <code>@graph</code>
+     * @param context JSON-LD context used to expand the compact URIs and terms passed to the index, can be null
+     */
+    @SuppressWarnings("unchecked")
+    public JsonLDGraphIndex(Object graph, Object context) {
+        this.context = new JsonLDContext(context);
+        if (graph instanceof Map) {
+            graph = ((Map<String, Object>) graph).get(GRAPH);
+        }
+        if (!(graph instanceof List)) {
+            throw new IllegalArgumentException("Expected a flattened JSON-LD graph");
+        }
+        for (Object value : (List<Object>) graph) {
+            if (!(value instanceof Map)) {
+                continue;
+            }
+            Map<String, Object> node = (Map<String, Object>) value;
+            Object id = node.get(ID);
+            if (id instanceof String) {
+                nodesById.put((String) id, node);
+            }
+            for (Object type : values(node.get(TYPE))) {
+                if (type instanceof String) {
+                    nodesByType.computeIfAbsent((String) type, (t) -> new ArrayList<>()).add(node);
+                }
+            }
+        }
+    }
+
+    // Node with the given id, null if there is none
+    public Map<String, Object> getNode(String id) {
+        return nodesById.get(context.expand(id, false));
+    }
+
+    // Nodes of the given type, in the order of the graph
+    public List<Map<String, Object>> getNodes(String type) {
+        List<Map<String, Object>> nodes = nodesByType.get(context.expand(type, true));
+        return nodes == null ? Collections.emptyList() : Collections.unmodifiableList(nodes);
+    }
+
+    public int size() {
+        return nodesById.size();
+    }
+
+    /**
+     * Frames all the nodes of a type. The nodes referenced through the embedded properties are replaced by their
+     * own frames, recursively, as are the blank nodes, whose ids mean nothing outside of the graph.
+     * A node already embedded higher in the same tree stays a reference, so cycles end.
+     * @param type type of the root nodes
+     * @param embed properties whose values are embedded
+     * @return a frame for every node of the type
+     */
+    public List<Object> frame(String type, String... embed) {
+        return frame(getNodes(type), embed);
+    }
+
+    /**
+     * Frames the given nodes, see {@link #frame(String, String...)}
+     * @param nodes root nodes
+     * @param embed properties whose values are embedded
+     * @return a frame for every node
+     */
+    public List<Object> frame(List<Map<String, Object>> nodes, String... embed) {
+        Set<String> properties = new HashSet<>();
+        Arrays.stream(embed).forEach((property) -> properties.add(context.expand(property, true)));
+        Set<String> path = new HashSet<>();
+        List<Object> frames = new ArrayList<>(nodes.size());
+        for (Map<String, Object> node : nodes) {
+            frames.add(frameNode(node, properties, path));
+        }
+        return frames;
+    }
+
+    private Map<String, Object> frameNode(Map<String, Object> node, Set<String> properties, Set<String> path) {
+        Object id = node.get(ID);
+        boolean onPath = id instanceof String && path.add((String) id);
+        Map<String, Object> frame = new LinkedHashMap<>(node);
+        for (Map.Entry<String, Object> entry : frame.entrySet()) {
+            if (entry.getKey().startsWith("@")) {
+                continue;
+            }
+            entry.setValue(embed(entry.getValue(), properties.contains(entry.getKey()), properties, path));
+        }
+        if (onPath) {
+            path.remove(id);
+        }
+        return frame;
+    }
+
+    // Replaces the references to embed in a value, returning the value itself when there is none
+    @SuppressWarnings("unchecked")
+    private Object embed(Object value, boolean embedAll, Set<String> properties, Set<String> path) {
+        if (value instanceof List) {
+            List<Object> values = (List<Object>) value;
+            List<Object> embedded = null;
+            for (int i = 0; i < values.size(); i++) {
+                Object item = embed(values.get(i), embedAll, properties, path);
+                if (item != values.get(i) && embedded == null) {
+                    embedded = new ArrayList<>(values);
+                }
+                if (embedded != null) {
+                    embedded.set(i, item);
+                }
+            }
+            return embedded == null ? value : embedded;
+        }
+        if (!(value instanceof Map)) {
+            return value;
+        }
+        Map<String, Object> object = (Map<String, Object>) value;
+        if (object.containsKey(LIST)) {
+            Object list = embed(object.get(LIST), embedAll, properties, path);
+            return list == object.get(LIST) ? value : Collections.singletonMap(LIST, list);
+        }
+        Object id = object.get(ID);
+        if (object.size() != 1 || !(id instanceof String) || path.contains(id)) {
+            return value;
+        }
+        Map<String, Object> node = nodesById.get(id);
+        if (node == null || !(embedAll || ((String) id).startsWith("_:"))) {
+            return value;
+        }
+        return frameNode(node, properties, path);
+    }
+
+    private static List<?> values(Object value) {
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        return value instanceof List ? (List<?>) value : Collections.singletonList(value);
+    }
+}
@@ -0,0 +1,196 @@
+package cim.loader;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads JSON documents with the Jackson parser, without going through a tree model.
+ * The top level objects of a file are passed one at a time to a {@link NodeHandler}: a file holding an array or a
+ * sequence of objects is never held in memory as a whole, while a file holding a single object, like the documents of
+ * the distribution, is built whole. The shared <code>@context</code> can be skipped without building it.
+ * Values are built the same way as <code>JsonUtils.fromInputStream</code> does: <code>LinkedHashMap</code> objects,
+ * <code>ArrayList</code> arrays, and <code>Integer</code>, <code>Long</code>, <code>BigInteger</code> or
+ * <code>Double</code> numbers.
+ */
+class JsonNodeReader {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    static {
+        // field names are mostly distinct URIs and terms, interning them does not pay off
+        FACTORY.disable(JsonFactory.Feature.INTERN_FIELD_NAMES);
+        FACTORY.disable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES);
+    }
+
+    // Receives the top level JSON objects of a file
+    interface NodeHandler {
+        void node(Map<String, Object> node) throws IOException;
+    }
+
+    // Consumes the tokens of a file
+    interface ParserTask {
+        void parse(JsonParser parser) throws IOException;
+    }
+
+    private JsonNodeReader() {
+    }
+
+    /**
+     * Runs a task over a streaming parser reading a file
+     * @param file
+     * @param task
+     * @throws IOException if the file cannot be read or is not valid JSON
+     */
+    static void parse(Path file, ParserTask task) throws IOException {
+        // the parser buffers the stream itself
+        try (InputStream in = Files.newInputStream(file); JsonParser parser = FACTORY.createParser(in)) {
+            task.parse(parser);
+        } catch (JsonParseException e) {
+            throw new IOException("Error parsing " + file + ": " + e.getOriginalMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the top level objects of a file: the document if it is an object, or each of its elements if it is an
+     * array of objects. Files with a sequence of documents, like JSON Lines, are streamed document by document.
+     * @param file
+     * @param skipContext drops the <code>@context</code> of the top level objects without building it
+     * @param handler
+     * @throws IOException if the file cannot be read or does not contain JSON objects
+     */
+    static void read(Path file, boolean skipContext, NodeHandler handler) throws IOException {
+        readObjects(file, (parser) -> handler.node(readObject(parser, skipContext)));
+    }
+
+    /**
+     * Streams the records of a file like {@link #read(Path, boolean, NodeHandler)}, except for a top level object with
+     * a <code>@graph</code> array and no <code>@type</code> before it: the objects of its <code>@graph</code> are passed
+     * one at a time instead, so a JSON-LD document is never held in memory as a whole. The other members of such an
+     * object, like its <code>@context</code>, are skipped.
+     * @param file
+     * @param handler
+     * @throws IOException if the file cannot be read or does not contain JSON objects
+     */
+    static void readRecords(Path file, NodeHandler handler) throws IOException {
+        readObjects(file, (parser) -> readRecords(parser, handler));
+    }
+
+    // Passes the parser to the reader at the start of every top level object
+    private static void readObjects(Path file, ParserTask reader) throws IOException {
+        parse(file, (parser) -> {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                throw new IOException("Error parsing " + file + ": expected a JSON object");
+            }
+            for (; token != null; token = parser.nextToken()) {
+                if (token == JsonToken.START_OBJECT) {
+                    reader.parse(parser);
+                } else if (token == JsonToken.START_ARRAY) {
+                    while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                        if (token != JsonToken.START_OBJECT) {
+                            throw new IOException("Error parsing " + file + ": expected an array of JSON objects");
+                        }
+                        reader.parse(parser);
+                    }
+                } else {
+                    throw new IOException("Error parsing " + file + ": expected a JSON object");
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads a file holding a single JSON object
+     * @param file
+     * @return
+     * @throws IOException if the file cannot be read or does not contain a JSON object
+     */
+    static Map<String, Object> readObject(Path file) throws IOException {
+        List<Map<String, Object>> nodes = new ArrayList<>(1);
+        read(file, false, nodes::add);
+        if (nodes.size() != 1) {
+            throw new IOException("Error parsing " + file + ": expected a JSON object");
+        }
+        return nodes.get(0);
+    }
+
+    // Reads an object whose START_OBJECT token has just been consumed
+    private static Map<String, Object> readObject(JsonParser parser, boolean skipContext) throws IOException {
+        Map<String, Object> object = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (skipContext && name.equals("@context")) {
+                parser.skipChildren();
+            } else {
+                object.put(name, readValue(parser, token));
+            }
+        }
+        return object;
+    }
+
+    // Reads the records of an object whose START_OBJECT token has just been consumed
+    private static void readRecords(JsonParser parser, NodeHandler handler) throws IOException {
+        Map<String, Object> object = new LinkedHashMap<>();
+        boolean graph = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (graph || name.equals("@context")) {
+                parser.skipChildren();
+            } else if (name.equals("@graph") && token == JsonToken.START_ARRAY && !object.containsKey("@type")) {
+                graph = true;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == JsonToken.START_OBJECT) {
+                        handler.node(readObject(parser, false));
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                object.put(name, readValue(parser, token));
+            }
+        }
+        if (!graph) {
+            handler.node(object);
+        }
+    }
+
+    private static Object readValue(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT:
+                return readObject(parser, false);
+            case START_ARRAY:
+                List<Object> array = new ArrayList<>();
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    array.add(readValue(parser, token));
+                }
+                return array;
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                return parser.getNumberValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            default:
+                throw new JsonParseException(parser, "Unexpected token " + token);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package cim.loader;
+
+/**
+ * Receives the measurements of every phase of a load, see {@link CIMLoader#addListener(LoadListener)}.
+ * Listeners are called in the thread running the load, once the phase has finished.
+ */
+public interface LoadListener {
+
+    void phaseCompleted(PhaseMetrics metrics);
+}
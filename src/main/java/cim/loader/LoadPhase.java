@@ -0,0 +1,25 @@
+package cim.loader;
+
+/**
+ * Steps of loading the distribution that are measured by {@link CIMLoader}
+ */
+public enum LoadPhase {
+    // Walking the directory of the distribution to find the files to load
+    WALK,
+    // Scanning the entity groups to resolve a selection of subject areas and entity groups
+    SELECT,
+    // Reading the @context file
+    CONTEXT,
+    // Reading and parsing the JSON files, injecting the @context
+    PARSE,
+    // Flattening the JSON-LD documents into a single graph
+    FLATTEN,
+    // Converting the JSON-LD documents to RDF triples
+    TO_RDF,
+    // Materializing the sh:and closure of the shapes
+    SHAPE_CLOSURE,
+    // Reading a model snapshot
+    SNAPSHOT_READ,
+    // Writing a model snapshot
+    SNAPSHOT_WRITE
+}
@@ -0,0 +1,62 @@
+package cim.loader;
+
+/**
+ * Measurements for one phase of a load.
+ * Counters that do not apply to a phase, or could not be measured, are -1.
+ */
+public class PhaseMetrics {
+
+    private final LoadPhase phase;
+    private final long wallTimeNanos;
+    private final long bytesRead;
+    private final long documents;
+    private final long triples;
+    private final long allocatedBytes;
+
+    public PhaseMetrics(LoadPhase phase, long wallTimeNanos, long bytesRead, long documents, long triples, long allocatedBytes) {
+        this.phase = phase;
+        this.wallTimeNanos = wallTimeNanos;
+        this.bytesRead = bytesRead;
+        this.documents = documents;
+        this.triples = triples;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public LoadPhase getPhase() {
+        return phase;
+    }
+
+    // Elapsed time of the phase
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    // Bytes read from files
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    // Files found, or JSON documents parsed or processed
+    public long getDocuments() {
+        return documents;
+    }
+
+    // Triples produced
+    public long getTriples() {
+        return triples;
+    }
+
+    // Bytes allocated in the heap by the threads doing the work, -1 if the JVM cannot measure it
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return phase + ": " + (wallTimeNanos / 1000000.0) + " ms" +
+                (bytesRead >= 0 ? ", " + bytesRead + " bytes read" : "") +
+                (documents >= 0 ? ", " + documents + " documents" : "") +
+                (triples >= 0 ? ", " + triples + " triples" : "") +
+                (allocatedBytes >= 0 ? ", " + allocatedBytes + " bytes allocated" : "");
+    }
+}
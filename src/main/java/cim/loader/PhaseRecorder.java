@@ -0,0 +1,111 @@
+package cim.loader;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures one phase of a load, from its creation until {@link #finish(List)}.
+ * Wall time and the allocations of the calling thread are measured automatically. Work done in other threads and
+ * the counters of the phase are added while it runs, from any thread.
+ * A JFR event spanning the phase is recorded when the JVM supports JFR and the build included the JFR classes of
+ * src/jfr/java, which need Java 11.
+ */
+class PhaseRecorder {
+
+    private static final Events EVENTS = loadEvents();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final LoadPhase phase;
+    private final Path directory;
+    private final long start;
+    private final long startAllocated;
+    private final Object event;
+    private final AtomicLong bytesRead = new AtomicLong(-1);
+    private final AtomicLong documents = new AtomicLong(-1);
+    private final AtomicLong triples = new AtomicLong(-1);
+    private final AtomicLong otherThreadsAllocated = new AtomicLong();
+
+    PhaseRecorder(LoadPhase phase, Path directory) {
+        this.phase = phase;
+        this.directory = directory;
+        this.event = EVENTS == null ? null : EVENTS.begin();
+        this.startAllocated = allocatedBytes();
+        this.start = System.nanoTime();
+    }
+
+    void addBytesRead(long bytes) {
+        add(bytesRead, bytes);
+    }
+
+    void addDocuments(long count) {
+        add(documents, count);
+    }
+
+    void addTriples(long count) {
+        add(triples, count);
+    }
+
+    // Allocations made for this phase by a thread other than the one that created the recorder
+    void addOtherThreadAllocated(long bytes) {
+        if (bytes > 0) {
+            otherThreadsAllocated.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * Ends the phase, passing its metrics to the listeners
+     * @param listeners
+     * @return
+     */
+    PhaseMetrics finish(List<LoadListener> listeners) {
+        long wallTime = System.nanoTime() - start;
+        long allocated = startAllocated < 0 ? -1 : allocatedBytes() - startAllocated + otherThreadsAllocated.get();
+        PhaseMetrics metrics = new PhaseMetrics(phase, wallTime, bytesRead.get(), documents.get(), triples.get(), allocated);
+        if (event != null) {
+            EVENTS.commit(event, metrics, directory);
+        }
+        for (LoadListener listener : listeners) {
+            listener.phaseCompleted(metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * Bytes allocated so far by the current thread
+     * @return the number of bytes, -1 if the JVM cannot measure it
+     */
+    static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static void add(AtomicLong counter, long value) {
+        counter.accumulateAndGet(value, (current, delta) -> Math.max(current, 0) + delta);
+    }
+
+    // The JFR events, null when the JVM has no JFR or the build left them out
+    private static Events loadEvents() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Events) Class.forName("cim.loader.JfrEvents").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    // Records the phases as JFR events, implemented in src/jfr/java so the loader still builds for Java 8
+    interface Events {
+
+        Object begin();
+
+        void commit(Object event, PhaseMetrics metrics, Path directory);
+    }
+}
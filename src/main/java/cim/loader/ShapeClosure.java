@@ -0,0 +1,157 @@
+package cim.loader;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.vocabulary.RDF;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Inference step adding the property shapes that shapes inherit through <code>sh:and</code> as explicit triples,
+ * so queries can find them with a plain triple pattern instead of evaluating a property path for every shape:
+ * <ul>
+ *     <li><code>?shape cim:inheritedProperty ?p</code> for every <code>?shape sh:and*&#47;sh:property ?p</code></li>
+ *     <li><code>?shape cim:schemaProperty ?p</code> for every
+ *     <code>?shape (sh:and&#47;rdf:rest&#47;rdf:first)?&#47;sh:property ?p</code></li>
+ * </ul>
+ */
+public class ShapeClosure {
+
+    // Materialized sh:and*/sh:property
+    public static final String INHERITED_PROPERTY = ShapeGraph.CIM + "inheritedProperty";
+    // Materialized (sh:and/rdf:rest/rdf:first)?/sh:property
+    public static final String SCHEMA_PROPERTY = ShapeGraph.CIM + "schemaProperty";
+
+    private static final Node INHERITED_PROPERTY_NODE = NodeFactory.createURI(INHERITED_PROPERTY);
+    private static final Node SCHEMA_PROPERTY_NODE = NodeFactory.createURI(SCHEMA_PROPERTY);
+    // Predicates followed by the closure of a shape
+    private static final Node[] LINKS = { ShapeGraph.SH_AND, RDF.rest.asNode(), RDF.first.asNode() };
+
+    private ShapeClosure() {
+    }
+
+    /**
+     * Computes the closure of the shapes in a graph
+     * @param graph
+     * @return the inferred triples
+     */
+    public static List<Triple> infer(Graph graph) {
+        Map<Node, List<Node>> properties = new HashMap<>();
+        ShapeGraph.forEach(graph, Node.ANY, ShapeGraph.SH_PROPERTY, Node.ANY, (t) ->
+                properties.computeIfAbsent(t.getSubject(), (k) -> new ArrayList<>()).add(t.getObject()));
+        Map<Node, List<Node>> and = new HashMap<>();
+        ShapeGraph.forEach(graph, Node.ANY, ShapeGraph.SH_AND, Node.ANY, (t) ->
+                and.computeIfAbsent(t.getSubject(), (k) -> new ArrayList<>()).add(t.getObject()));
+
+        Set<Node> shapes = new LinkedHashSet<>(properties.keySet());
+        shapes.addAll(and.keySet());
+
+        List<Triple> inferred = new ArrayList<>();
+        for (Node shape : shapes) {
+            inferShape(graph, shape, (n) -> properties.getOrDefault(n, Collections.emptyList()),
+                    (n) -> and.getOrDefault(n, Collections.emptyList()), inferred);
+        }
+        return inferred;
+    }
+
+    /**
+     * Computes the closure of some of the shapes in a graph, looking up only the triples they depend on
+     * @param graph
+     * @param shapes nodes to compute the closure of, nodes that are not shapes infer nothing
+     * @return the inferred triples
+     */
+    public static List<Triple> infer(Graph graph, Collection<Node> shapes) {
+        List<Triple> inferred = new ArrayList<>();
+        for (Node shape : shapes) {
+            inferShape(graph, shape, (n) -> objects(graph, n, ShapeGraph.SH_PROPERTY),
+                    (n) -> objects(graph, n, ShapeGraph.SH_AND), inferred);
+        }
+        return inferred;
+    }
+
+    /**
+     * Nodes whose closure can change with the triples of some subjects: the subjects themselves, and the nodes
+     * reaching them backwards through <code>sh:and</code>, <code>rdf:rest</code> and <code>rdf:first</code>, since the
+     * closure of a shape only reads the triples of the nodes it reaches through them.
+     * @param graph
+     * @param subjects subjects of the triples added or removed
+     * @return
+     */
+    public static Set<Node> affected(Graph graph, Collection<Node> subjects) {
+        Set<Node> affected = new HashSet<>();
+        Deque<Node> pending = new ArrayDeque<>(subjects);
+        while (!pending.isEmpty()) {
+            Node node = pending.poll();
+            if (affected.add(node)) {
+                for (Node link : LINKS) {
+                    ShapeGraph.forEach(graph, Node.ANY, link, node, (t) -> pending.add(t.getSubject()));
+                }
+            }
+        }
+        return affected;
+    }
+
+    private static void inferShape(Graph graph, Node shape, Function<Node, List<Node>> properties,
+                                   Function<Node, List<Node>> and, List<Triple> inferred) {
+        // sh:and*/sh:property
+        Set<Node> inherited = new LinkedHashSet<>();
+        Set<Node> visited = new HashSet<>();
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.add(shape);
+        while (!pending.isEmpty()) {
+            Node next = pending.poll();
+            if (visited.add(next)) {
+                inherited.addAll(properties.apply(next));
+                pending.addAll(and.apply(next));
+            }
+        }
+        for (Node property : inherited) {
+            inferred.add(Triple.create(shape, INHERITED_PROPERTY_NODE, property));
+        }
+
+        // (sh:and/rdf:rest/rdf:first)?/sh:property
+        Set<Node> parts = new LinkedHashSet<>();
+        parts.add(shape);
+        for (Node list : and.apply(shape)) {
+            ShapeGraph.forEach(graph, list, RDF.rest.asNode(), Node.ANY, (rest) ->
+                    ShapeGraph.forEach(graph, rest.getObject(), RDF.first.asNode(), Node.ANY, (first) -> parts.add(first.getObject())));
+        }
+        Set<Node> schemaProperties = new LinkedHashSet<>();
+        for (Node part : parts) {
+            schemaProperties.addAll(properties.apply(part));
+        }
+        for (Node property : schemaProperties) {
+            inferred.add(Triple.create(shape, SCHEMA_PROPERTY_NODE, property));
+        }
+    }
+
+    private static List<Node> objects(Graph graph, Node subject, Node predicate) {
+        List<Node> objects = new ArrayList<>();
+        ShapeGraph.forEach(graph, subject, predicate, Node.ANY, (t) -> objects.add(t.getObject()));
+        return objects;
+    }
+
+    /**
+     * Adds the closure of the shapes in a graph to the same graph
+     * @param graph
+     * @return number of triples added
+     */
+    public static int materialize(Graph graph) {
+        List<Triple> inferred = infer(graph);
+        inferred.forEach(graph::add);
+        return inferred.size();
+    }
+}
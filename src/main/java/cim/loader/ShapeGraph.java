@@ -0,0 +1,162 @@
+package cim.loader;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Vocabulary and graph access shared by the classes reading the shapes of the model: the CIM, SHACL and XSD namespaces,
+ * the SHACL terms, lookups over <code>Graph.find</code> that close their iterators, and the walk from a class to the
+ * property shapes that apply to its instances.
+ */
+public final class ShapeGraph {
+
+    public static final String CIM = "http://cloudinformationmodel.org/model/";
+    public static final String SH = "http://www.w3.org/ns/shacl#";
+    public static final String XSD = "http://www.w3.org/2001/XMLSchema#";
+
+    public static final Node SH_NODE_SHAPE = NodeFactory.createURI(SH + "NodeShape");
+    public static final Node SH_TARGET_CLASS = NodeFactory.createURI(SH + "targetClass");
+    public static final Node SH_PROPERTY = NodeFactory.createURI(SH + "property");
+    public static final Node SH_AND = NodeFactory.createURI(SH + "and");
+    public static final Node SH_PATH = NodeFactory.createURI(SH + "path");
+    public static final Node SH_DATATYPE = NodeFactory.createURI(SH + "datatype");
+    public static final Node SH_MIN_COUNT = NodeFactory.createURI(SH + "minCount");
+    public static final Node SH_MAX_COUNT = NodeFactory.createURI(SH + "maxCount");
+    public static final Node SH_NODE = NodeFactory.createURI(SH + "node");
+
+    // Standard prefixes with cim: and sh:, for compact ids
+    public static final PrefixMapping PREFIXES = PrefixMapping.Factory.create()
+            .setNsPrefixes(PrefixMapping.Standard)
+            .setNsPrefix("cim", CIM)
+            .setNsPrefix("sh", SH)
+            .lock();
+
+    private ShapeGraph() {
+    }
+
+    // Passes the matching triples to a handler
+    public static void forEach(Graph graph, Node s, Node p, Node o, Consumer<Triple> handler) {
+        ExtendedIterator<Triple> it = graph.find(s, p, o);
+        try {
+            while (it.hasNext()) {
+                handler.accept(it.next());
+            }
+        } finally {
+            it.close();
+        }
+    }
+
+    // The value of a property with a single value, null if it has none or many
+    public static Node single(Graph graph, Node subject, Node predicate) {
+        ExtendedIterator<Triple> it = graph.find(subject, predicate, Node.ANY);
+        try {
+            Node value = it.hasNext() ? it.next().getObject() : null;
+            return it.hasNext() ? null : value;
+        } finally {
+            it.close();
+        }
+    }
+
+    // Members of an RDF list, null if the node is not a well formed list
+    public static List<Node> list(Graph graph, Node node) {
+        List<Node> members = new ArrayList<>();
+        Set<Node> visited = new HashSet<>();
+        while (!node.equals(RDF.nil.asNode())) {
+            if (!visited.add(node)) {
+                return null;
+            }
+            Node first = single(graph, node, RDF.first.asNode());
+            Node rest = single(graph, node, RDF.rest.asNode());
+            if (first == null || rest == null) {
+                return null;
+            }
+            members.add(first);
+            node = rest;
+        }
+        return members;
+    }
+
+    // Shapes targeting each class through sh:targetClass
+    public static Map<Node, List<Node>> targets(Graph graph) {
+        Map<Node, List<Node>> targets = new HashMap<>();
+        forEach(graph, Node.ANY, SH_TARGET_CLASS, Node.ANY, (t) ->
+                targets.computeIfAbsent(t.getObject(), (k) -> new ArrayList<>()).add(t.getSubject()));
+        return targets;
+    }
+
+    /**
+     * Shapes of a class: for the class and each of its superclasses, the class itself when it is also a shape, and the
+     * shapes targeting it
+     * @param graph
+     * @param type
+     * @param targets shapes by target class, see {@link #targets(Graph)}
+     * @return
+     */
+    public static Set<Node> classShapes(Graph graph, Node type, Map<Node, List<Node>> targets) {
+        Set<Node> shapes = new LinkedHashSet<>();
+        Set<Node> classes = new HashSet<>();
+        Deque<Node> next = new ArrayDeque<>();
+        next.add(type);
+        while (!next.isEmpty()) {
+            Node c = next.poll();
+            if (classes.add(c)) {
+                if (isShape(graph, c)) {
+                    shapes.add(c);
+                }
+                shapes.addAll(targets.getOrDefault(c, Collections.emptyList()));
+                forEach(graph, c, RDFS.subClassOf.asNode(), Node.ANY, (t) -> next.add(t.getObject()));
+            }
+        }
+        return shapes;
+    }
+
+    // Property shapes of some shapes and of the members of their sh:and lists, recursively, in depth first order
+    public static Set<Node> propertyShapes(Graph graph, Collection<Node> shapes) {
+        Set<Node> properties = new LinkedHashSet<>();
+        Set<Node> visited = new HashSet<>();
+        for (Node shape : shapes) {
+            collectPropertyShapes(graph, shape, visited, properties);
+        }
+        return properties;
+    }
+
+    private static void collectPropertyShapes(Graph graph, Node shape, Set<Node> visited, Set<Node> properties) {
+        if (!visited.add(shape)) {
+            return;
+        }
+        forEach(graph, shape, SH_PROPERTY, Node.ANY, (t) -> properties.add(t.getObject()));
+        forEach(graph, shape, SH_AND, Node.ANY, (t) -> {
+            List<Node> members = list(graph, t.getObject());
+            if (members != null) {
+                for (Node member : members) {
+                    collectPropertyShapes(graph, member, visited, properties);
+                }
+            }
+        });
+    }
+
+    public static boolean isShape(Graph graph, Node node) {
+        return graph.contains(node, RDF.type.asNode(), SH_NODE_SHAPE)
+                || graph.contains(node, SH_PROPERTY, Node.ANY)
+                || graph.contains(node, SH_AND, Node.ANY);
+    }
+}
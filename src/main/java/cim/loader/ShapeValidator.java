@@ -0,0 +1,567 @@
+package cim.loader;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Validates JSON and JSON-LD records against the SHACL shapes of the distribution.
+ * The shapes are compiled once: for every class, the property shapes of the shapes targeting it or any of its
+ * superclasses, including the shapes inherited through <code>sh:and</code>, become a flat array of checks holding the
+ * keys of the path, the cardinality, a check specialized for the datatype and the compiled checks of the
+ * <code>sh:node</code> shape. Validating a record is then a few map lookups per property, without going through a
+ * SHACL engine or converting the record to RDF.
+ * <p>
+ * Records are JSON objects typed by their <code>@type</code>. Properties are found by the URI of their path, its
+ * compact form like <code>cim:accountName</code>, or its local name. Values can be plain JSON values, arrays, JSON-LD
+ * value objects, references like <code>{"@id": ...}</code> or id strings, and nested records, which are validated
+ * against the shape of <code>sh:node</code>.
+ * Shapes are open: keys without a property shape are ignored.
+ */
+public class ShapeValidator {
+
+    // Records validated by each task
+    private static final int BATCH_SIZE = 1024;
+    // Nested records deeper than this are not validated
+    private static final int MAX_DEPTH = 32;
+
+    private static final Pattern DECIMAL = Pattern.compile("[+-]?([0-9]+(\\.[0-9]*)?|\\.[0-9]+)");
+    private static final Pattern DOUBLE = Pattern.compile("[+-]?([0-9]+(\\.[0-9]*)?|\\.[0-9]+)([eE][+-]?[0-9]+)?|[+-]?INF|NaN");
+    private static final String TIMEZONE = "(Z|[+-][0-9]{2}:[0-9]{2})?";
+    private static final Pattern DATE = Pattern.compile("-?[0-9]{4,}-[0-9]{2}-[0-9]{2}" + TIMEZONE);
+    private static final Pattern TIME = Pattern.compile("[0-9]{2}:[0-9]{2}:[0-9]{2}(\\.[0-9]+)?" + TIMEZONE);
+    private static final Pattern DATE_TIME = Pattern.compile("-?[0-9]{4,}-[0-9]{2}-[0-9]{2}T[0-9]{2}:[0-9]{2}:[0-9]{2}(\\.[0-9]+)?" + TIMEZONE);
+
+    // Checks of the values of a datatype, chosen once for every property shape
+    private enum Datatype {
+        STRING {
+            boolean accepts(Object value) {
+                return value instanceof String;
+            }
+        },
+        INTEGER {
+            boolean accepts(Object value) {
+                if (value instanceof String) {
+                    String s = (String) value;
+                    int start = !s.isEmpty() && (s.charAt(0) == '+' || s.charAt(0) == '-') ? 1 : 0;
+                    if (start == s.length()) {
+                        return false;
+                    }
+                    for (int i = start; i < s.length(); i++) {
+                        if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+                return value instanceof Integer || value instanceof Long || value instanceof BigInteger;
+            }
+        },
+        DECIMAL {
+            boolean accepts(Object value) {
+                return value instanceof Number || value instanceof String && ShapeValidator.DECIMAL.matcher((String) value).matches();
+            }
+        },
+        DOUBLE {
+            boolean accepts(Object value) {
+                return value instanceof Number || value instanceof String && ShapeValidator.DOUBLE.matcher((String) value).matches();
+            }
+        },
+        BOOLEAN {
+            boolean accepts(Object value) {
+                return value instanceof Boolean || "true".equals(value) || "false".equals(value) || "1".equals(value) || "0".equals(value);
+            }
+        },
+        DATE {
+            boolean accepts(Object value) {
+                return value instanceof String && ShapeValidator.DATE.matcher((String) value).matches();
+            }
+        },
+        TIME {
+            boolean accepts(Object value) {
+                return value instanceof String && ShapeValidator.TIME.matcher((String) value).matches();
+            }
+        },
+        DATE_TIME {
+            boolean accepts(Object value) {
+                return value instanceof String && ShapeValidator.DATE_TIME.matcher((String) value).matches();
+            }
+        },
+        // cim:id, a reference to another record, or the nested record itself
+        ID {
+            boolean accepts(Object value) {
+                return value instanceof String;
+            }
+        },
+        // any other datatype, only checks that the value is not a record
+        ANY {
+            boolean accepts(Object value) {
+                return true;
+            }
+        };
+
+        // Whether a scalar value, or the string id of a reference, has the datatype
+        abstract boolean accepts(Object value);
+
+        static Datatype of(String uri) {
+            switch (uri) {
+                case ShapeGraph.XSD + "string":
+                case ShapeGraph.XSD + "normalizedString":
+                case ShapeGraph.XSD + "token":
+                case ShapeGraph.XSD + "language":
+                case ShapeGraph.XSD + "anyURI":
+                    return STRING;
+                case ShapeGraph.XSD + "integer":
+                case ShapeGraph.XSD + "int":
+                case ShapeGraph.XSD + "long":
+                case ShapeGraph.XSD + "short":
+                case ShapeGraph.XSD + "byte":
+                case ShapeGraph.XSD + "nonNegativeInteger":
+                case ShapeGraph.XSD + "positiveInteger":
+                case ShapeGraph.XSD + "nonPositiveInteger":
+                case ShapeGraph.XSD + "negativeInteger":
+                case ShapeGraph.XSD + "unsignedLong":
+                case ShapeGraph.XSD + "unsignedInt":
+                case ShapeGraph.XSD + "unsignedShort":
+                case ShapeGraph.XSD + "unsignedByte":
+                    return INTEGER;
+                case ShapeGraph.XSD + "decimal":
+                    return DECIMAL;
+                case ShapeGraph.XSD + "double":
+                case ShapeGraph.XSD + "float":
+                    return DOUBLE;
+                case ShapeGraph.XSD + "boolean":
+                    return BOOLEAN;
+                case ShapeGraph.XSD + "date":
+                    return DATE;
+                case ShapeGraph.XSD + "time":
+                    return TIME;
+                case ShapeGraph.XSD + "dateTime":
+                case ShapeGraph.XSD + "dateTimeStamp":
+                    return DATE_TIME;
+                case ShapeGraph.CIM + "id":
+                    return ID;
+                default:
+                    return ANY;
+            }
+        }
+    }
+
+    // Compiled property shape
+    private static class PropertyCheck {
+        final String path;
+        final String[] keys;
+        final int minCount;
+        final int maxCount;
+        final Datatype datatype;
+        final String datatypeName;
+        final RecordCheck node;
+
+        PropertyCheck(String path, String[] keys, int minCount, int maxCount, Datatype datatype, String datatypeName, RecordCheck node) {
+            this.path = path;
+            this.keys = keys;
+            this.minCount = minCount;
+            this.maxCount = maxCount;
+            this.datatype = datatype;
+            this.datatypeName = datatypeName;
+            this.node = node;
+        }
+
+        // Value of the property in a record, null if it has none
+        Object lookup(Map<String, Object> record) {
+            for (String key : keys) {
+                Object value = record.get(key);
+                if (value != null) {
+                    return value;
+                }
+            }
+            return null;
+        }
+    }
+
+    // Compiled shapes of a type of record, the checks are linked after all the types are created
+    private static class RecordCheck {
+        final String name;
+        PropertyCheck[] checks;
+
+        RecordCheck(String name) {
+            this.name = name;
+        }
+    }
+
+    // Compiled types by URI, compact URI and local name
+    private final Map<String, RecordCheck> types;
+    private final int typeCount;
+    private RecordCheck defaultType;
+    private int parallelism = 1;
+
+    private ShapeValidator(Map<String, RecordCheck> types, int typeCount) {
+        this.types = types;
+        this.typeCount = typeCount;
+    }
+
+    /**
+     * Compiles the shapes of a model, usually loaded with {@link CIMUseCase#CONCEPTUAL_AND_SCHEMA} or
+     * {@link CIMUseCase#CANONICAL_SCHEMA}
+     * @param model
+     * @return
+     */
+    public static ShapeValidator compile(Model model) {
+        return compile(model.getGraph());
+    }
+
+    public static ShapeValidator compile(Graph graph) {
+        return new Compiler(graph).compile();
+    }
+
+    // Number of compiled types of records
+    public int getTypeCount() {
+        return typeCount;
+    }
+
+    /**
+     * Type of the records without <code>@type</code>
+     * @param type URI, compact URI or local name of a class, null to report records without a type as violations
+     * @throws IllegalArgumentException if there are no shapes for the type
+     */
+    public void setDefaultType(String type) {
+        if (type == null) {
+            defaultType = null;
+            return;
+        }
+        RecordCheck check = types.get(type);
+        if (check == null) {
+            throw new IllegalArgumentException("No shapes for type " + type);
+        }
+        defaultType = check;
+    }
+
+    /**
+     * Number of threads validating the records of a file, see {@link #validate(Path, Consumer)}.
+     * With the default value of 1 records are validated in the calling thread.
+     * @param parallelism
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Validates a single record
+     * @param record
+     * @param index position of the record, for the violations
+     * @return the violations, empty if the record conforms
+     */
+    public List<ShapeViolation> validate(Map<String, Object> record, long index) {
+        List<ShapeViolation> violations = new ArrayList<>(0);
+        validate(record, index, violations);
+        return violations;
+    }
+
+    private void validate(Map<String, Object> record, long index, List<ShapeViolation> violations) {
+        Object id = record.get("@id");
+        String focus = id instanceof String ? (String) id : null;
+        Object type = record.get("@type");
+        if (type == null) {
+            if (defaultType == null) {
+                violations.add(new ShapeViolation(index, focus, "", ShapeViolation.Constraint.CLASS, "the record has no @type"));
+            } else {
+                check(defaultType, record, "", 0, index, focus, violations);
+            }
+        } else if (type instanceof List) {
+            for (Object t : (List<?>) type) {
+                checkType(t, record, index, focus, violations);
+            }
+        } else {
+            checkType(type, record, index, focus, violations);
+        }
+    }
+
+    private void checkType(Object type, Map<String, Object> record, long index, String focus, List<ShapeViolation> violations) {
+        RecordCheck check = type instanceof String ? types.get(type) : null;
+        if (check == null) {
+            violations.add(new ShapeViolation(index, focus, "", ShapeViolation.Constraint.CLASS, "no shapes for type " + type));
+        } else {
+            check(check, record, "", 0, index, focus, violations);
+        }
+    }
+
+    private void check(RecordCheck type, Map<String, Object> record, String prefix, int depth, long index, String focus, List<ShapeViolation> violations) {
+        for (PropertyCheck check : type.checks) {
+            Object value = check.lookup(record);
+            if (value instanceof Map && ((Map<?, ?>) value).containsKey("@list")) {
+                value = ((Map<?, ?>) value).get("@list");
+            }
+            int count = 0;
+            if (value instanceof List) {
+                for (Object element : (List<?>) value) {
+                    if (element != null) {
+                        count++;
+                        checkValue(check, element, prefix, depth, index, focus, violations);
+                    }
+                }
+            } else if (value != null) {
+                count = 1;
+                checkValue(check, value, prefix, depth, index, focus, violations);
+            }
+            if (count < check.minCount) {
+                violations.add(new ShapeViolation(index, focus, prefix + check.path, ShapeViolation.Constraint.MIN_COUNT,
+                        "expected at least " + check.minCount + " values, found " + count));
+            }
+            if (check.maxCount >= 0 && count > check.maxCount) {
+                violations.add(new ShapeViolation(index, focus, prefix + check.path, ShapeViolation.Constraint.MAX_COUNT,
+                        "expected at most " + check.maxCount + " values, found " + count));
+            }
+        }
+    }
+
+    private void checkValue(PropertyCheck check, Object value, String prefix, int depth, long index, String focus, List<ShapeViolation> violations) {
+        if (value instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> map = (Map<String, Object>) value;
+            if (map.containsKey("@value")) {
+                value = map.get("@value");
+            } else if (map.size() == 1 && map.get("@id") instanceof String) {
+                value = map.get("@id");
+                if (check.datatype != null && check.datatype != Datatype.ID && check.datatype != Datatype.ANY) {
+                    violations.add(new ShapeViolation(index, focus, prefix + check.path, ShapeViolation.Constraint.DATATYPE,
+                            "expected " + check.datatypeName + ", found reference " + value));
+                }
+                return;
+            } else {
+                // nested record
+                if (check.datatype != null && check.datatype != Datatype.ID && check.datatype != Datatype.ANY) {
+                    violations.add(new ShapeViolation(index, focus, prefix + check.path, ShapeViolation.Constraint.DATATYPE,
+                            "expected " + check.datatypeName + ", found a record"));
+                } else if (check.node != null && depth < MAX_DEPTH) {
+                    check(check.node, map, prefix + check.path + "/", depth + 1, index, focus, violations);
+                }
+                return;
+            }
+        }
+        if (value instanceof List || value instanceof Map) {
+            violations.add(new ShapeViolation(index, focus, prefix + check.path, ShapeViolation.Constraint.DATATYPE,
+                    "expected " + (check.datatypeName == null ? "a value" : check.datatypeName) + ", found a nested structure"));
+        } else if (check.datatype != null && !check.datatype.accepts(value)) {
+            violations.add(new ShapeViolation(index, focus, prefix + check.path, ShapeViolation.Constraint.DATATYPE,
+                    "expected " + check.datatypeName + ", found " + describe(value)));
+        } else if (check.node != null && !(value instanceof String)) {
+            violations.add(new ShapeViolation(index, focus, prefix + check.path, ShapeViolation.Constraint.NODE,
+                    "expected a " + check.node.name + " record or reference, found " + describe(value)));
+        }
+    }
+
+    private static String describe(Object value) {
+        return value instanceof String ? "\"" + value + "\"" : String.valueOf(value);
+    }
+
+    /**
+     * Validates the records of a file: a JSON object, an array of objects, a sequence of objects like JSON Lines, or a
+     * JSON-LD document with a <code>@graph</code>.
+     * Records are streamed from the file, see {@link JsonNodeReader#readRecords(Path, JsonNodeReader.NodeHandler)},
+     * parsed in the calling thread and validated in batches by {@link #setParallelism(int)} threads.
+     * Violations are passed to the handler in the calling thread, in the order of the records.
+     * @param file
+     * @param handler
+     * @return number of records validated
+     * @throws IOException if the file cannot be read or is not valid JSON
+     */
+    public long validate(Path file, Consumer<ShapeViolation> handler) throws IOException {
+        if (parallelism == 1) {
+            long[] records = new long[1];
+            List<ShapeViolation> violations = new ArrayList<>();
+            JsonNodeReader.readRecords(file, (record) -> {
+                validate(record, records[0]++, violations);
+                violations.forEach(handler);
+                violations.clear();
+            });
+            return records[0];
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        // batches being validated, bounded so parsing does not run ahead of validation
+        Deque<Future<List<ShapeViolation>>> pending = new ArrayDeque<>();
+        long[] records = new long[1];
+        AtomicReference<List<Map<String, Object>>> batch = new AtomicReference<>(new ArrayList<>(BATCH_SIZE));
+        try {
+            JsonNodeReader.readRecords(file, (record) -> {
+                long index = records[0]++;
+                batch.get().add(record);
+                if (batch.get().size() == BATCH_SIZE) {
+                    pending.add(submit(executor, batch.getAndSet(new ArrayList<>(BATCH_SIZE)), index - BATCH_SIZE + 1));
+                    while (pending.size() > 2 * parallelism) {
+                        drain(pending.poll(), handler);
+                    }
+                }
+            });
+            if (!batch.get().isEmpty()) {
+                pending.add(submit(executor, batch.get(), records[0] - batch.get().size()));
+            }
+            while (!pending.isEmpty()) {
+                drain(pending.poll(), handler);
+            }
+            return records[0];
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Future<List<ShapeViolation>> submit(ExecutorService executor, List<Map<String, Object>> records, long first) {
+        return executor.submit(() -> {
+            List<ShapeViolation> violations = new ArrayList<>();
+            for (int i = 0; i < records.size(); i++) {
+                validate(records.get(i), first + i, violations);
+            }
+            return violations;
+        });
+    }
+
+    private static void drain(Future<List<ShapeViolation>> batch, Consumer<ShapeViolation> handler) throws IOException {
+        try {
+            batch.get().forEach(handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted validating records");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Error validating records", e.getCause());
+        }
+    }
+
+    // Compiles the shapes of a graph
+    private static class Compiler {
+        private final Graph graph;
+        private final Map<Node, List<Node>> targets;
+        private final Map<Node, RecordCheck> compiled = new HashMap<>();
+        private final Map<String, PropertyCheck> propertyChecks = new HashMap<>();
+        private final Deque<Node> pending = new ArrayDeque<>();
+
+        Compiler(Graph graph) {
+            this.graph = graph;
+            this.targets = ShapeGraph.targets(graph);
+        }
+
+        ShapeValidator compile() {
+            Set<Node> classes = new LinkedHashSet<>();
+            ShapeGraph.forEach(graph, Node.ANY, RDF.type.asNode(), RDFS.Class.asNode(), (t) -> classes.add(t.getSubject()));
+            classes.addAll(targets.keySet());
+            for (Node type : classes) {
+                if (type.isURI()) {
+                    recordCheck(type);
+                }
+            }
+            // shapes referenced by sh:node are queued as they are found
+            while (!pending.isEmpty()) {
+                Node type = pending.poll();
+                compiled.get(type).checks = propertyChecks(type);
+            }
+
+            Map<String, RecordCheck> types = new HashMap<>();
+            compiled.forEach((type, check) -> {
+                types.put(type.getURI(), check);
+                types.put(ShapeGraph.PREFIXES.shortForm(type.getURI()), check);
+            });
+            // local names only when they are not already taken by a URI
+            compiled.forEach((type, check) -> types.putIfAbsent(localName(type.getURI()), check));
+            return new ShapeValidator(types, compiled.size());
+        }
+
+        private RecordCheck recordCheck(Node type) {
+            RecordCheck check = compiled.get(type);
+            if (check == null) {
+                check = new RecordCheck(ShapeGraph.PREFIXES.shortForm(type.getURI()));
+                compiled.put(type, check);
+                pending.add(type);
+            }
+            return check;
+        }
+
+        // Property checks of the shapes of a type and its superclasses, with their sh:and shapes
+        private PropertyCheck[] propertyChecks(Node type) {
+            Set<PropertyCheck> checks = new LinkedHashSet<>();
+            for (Node property : ShapeGraph.propertyShapes(graph, ShapeGraph.classShapes(graph, type, targets))) {
+                PropertyCheck check = propertyCheck(property);
+                if (check != null) {
+                    checks.add(check);
+                }
+            }
+            return checks.toArray(new PropertyCheck[0]);
+        }
+
+        // Compiled property shape, shared by all the shapes with an identical one, null if it has no path
+        private PropertyCheck propertyCheck(Node property) {
+            Node path = ShapeGraph.single(graph, property, ShapeGraph.SH_PATH);
+            if (path == null || !path.isURI()) {
+                return null;
+            }
+            Node datatype = ShapeGraph.single(graph, property, ShapeGraph.SH_DATATYPE);
+            int minCount = count(ShapeGraph.single(graph, property, ShapeGraph.SH_MIN_COUNT), 0);
+            int maxCount = count(ShapeGraph.single(graph, property, ShapeGraph.SH_MAX_COUNT), -1);
+            Node node = ShapeGraph.single(graph, property, ShapeGraph.SH_NODE);
+            String datatypeUri = datatype != null && datatype.isURI() ? datatype.getURI() : null;
+            String nodeUri = node != null && node.isURI() ? node.getURI() : null;
+
+            String key = path.getURI() + " " + datatypeUri + " " + minCount + " " + maxCount + " " + nodeUri;
+            PropertyCheck check = propertyChecks.get(key);
+            if (check == null) {
+                check = new PropertyCheck(
+                        ShapeGraph.PREFIXES.shortForm(path.getURI()),
+                        keys(path.getURI()),
+                        minCount,
+                        maxCount,
+                        datatypeUri == null ? null : Datatype.of(datatypeUri),
+                        datatypeUri == null ? null : ShapeGraph.PREFIXES.shortForm(datatypeUri),
+                        nodeUri == null ? null : recordCheck(node));
+                propertyChecks.put(key, check);
+            }
+            return check;
+        }
+
+        private static int count(Node literal, int missing) {
+            if (literal == null || !literal.isLiteral() || !(literal.getLiteralValue() instanceof Number)) {
+                return missing;
+            }
+            return ((Number) literal.getLiteralValue()).intValue();
+        }
+    }
+
+    // Keys of a URI in the records, most used first: its local name, its compact form and the URI
+    private static String[] keys(String uri) {
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(localName(uri));
+        keys.add(ShapeGraph.PREFIXES.shortForm(uri));
+        keys.add(uri);
+        keys.remove("");
+        return keys.toArray(new String[0]);
+    }
+
+    private static String localName(String uri) {
+        return uri.substring(Math.max(uri.lastIndexOf('/'), uri.lastIndexOf('#')) + 1);
+    }
+}
@@ -0,0 +1,59 @@
+package cim.loader;
+
+/**
+ * A record that does not conform to the shapes of its type, found by {@link ShapeValidator}
+ */
+public class ShapeViolation {
+
+    // SHACL constraint component that was violated, or CLASS when there are no shapes for the type of the record
+    public enum Constraint {
+        CLASS,
+        MIN_COUNT,
+        MAX_COUNT,
+        DATATYPE,
+        NODE
+    }
+
+    private final long record;
+    private final String focus;
+    private final String path;
+    private final Constraint constraint;
+    private final String message;
+
+    public ShapeViolation(long record, String focus, String path, Constraint constraint, String message) {
+        this.record = record;
+        this.focus = focus;
+        this.path = path;
+        this.constraint = constraint;
+        this.message = message;
+    }
+
+    // Position of the record in its input, starting at 0
+    public long getRecord() {
+        return record;
+    }
+
+    // @id of the record, null if it has none
+    public String getFocus() {
+        return focus;
+    }
+
+    // Compact path of the value, with the paths of the nested records holding it, empty for the record itself
+    public String getPath() {
+        return path;
+    }
+
+    public Constraint getConstraint() {
+        return constraint;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    // Tab separated fields: record, focus, path, constraint and message
+    @Override
+    public String toString() {
+        return record + "\t" + (focus == null ? "" : focus) + "\t" + path + "\t" + constraint + "\t" + message;
+    }
+}
@@ -0,0 +1,150 @@
+package cim.loader;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RiotException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Directory of binary RDF snapshots of loaded models.
+ * Snapshots are stored in RDF Thrift format, one file per use case and source, named after a SHA-256 hash of the
+ * paths, sizes and contents of the files that were loaded. A snapshot is only reused if none of those files changed.
+ * Several distributions and selections can share the directory, each source only replaces its own snapshots.
+ */
+class SnapshotCache {
+
+    private static final String EXTENSION = ".rt";
+
+    private final Path directory;
+    private final String source;
+
+    /**
+     * @param directory
+     * @param source what the models are loaded from, like the directory of the distribution and the selection
+     */
+    SnapshotCache(Path directory, String source) {
+        this.directory = directory;
+        this.source = hex(newDigest().digest(source.getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+    }
+
+    /**
+     * Computes the content hash for a set of files of the distribution
+     * @param useCase
+     * @param cimDirectory
+     * @param files
+     * @return
+     * @throws IOException
+     */
+    static String key(CIMUseCase useCase, Path cimDirectory, List<Path> files) throws IOException {
+        MessageDigest digest = newDigest();
+        digest.update(useCase.name().getBytes(StandardCharsets.UTF_8));
+
+        List<Path> sorted = new ArrayList<>(files);
+        sorted.sort((a, b) -> cimDirectory.relativize(a).toString().compareTo(cimDirectory.relativize(b).toString()));
+        byte[] buffer = new byte[64 * 1024];
+        for (Path f : sorted) {
+            digest.update((byte) 0);
+            digest.update(cimDirectory.relativize(f).toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Long.toString(Files.size(f)).getBytes(StandardCharsets.UTF_8));
+            try (InputStream in = Files.newInputStream(f)) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+
+        return hex(digest.digest());
+    }
+
+    /**
+     * Reads the snapshot for the key into the model, if there is one
+     * @param useCase
+     * @param key
+     * @param model
+     * @return true if the snapshot was found and read
+     */
+    boolean read(CIMUseCase useCase, String key, Model model) {
+        Path snapshot = snapshotFile(useCase, key);
+        if (!Files.isRegularFile(snapshot)) {
+            return false;
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(snapshot))) {
+            RDFDataMgr.read(model, in, Lang.RDFTHRIFT);
+            return true;
+        } catch (IOException | RiotException e) {
+            return false; // unreadable snapshot, the model will be loaded from the distribution again
+        }
+    }
+
+    /**
+     * Stores the model as the snapshot for the key, removing older snapshots for the same use case and source
+     * @param useCase
+     * @param key
+     * @param model
+     * @throws IOException
+     */
+    void write(CIMUseCase useCase, String key, Model model) throws IOException {
+        Files.createDirectories(directory);
+        Path snapshot = snapshotFile(useCase, key);
+        Path tmp = Files.createTempFile(directory, prefix(useCase), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                RDFDataMgr.write(out, model, RDFFormat.RDF_THRIFT);
+            }
+            Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, prefix(useCase) + "*" + EXTENSION)) {
+            for (Path f : stale) {
+                if (!f.equals(snapshot)) {
+                    Files.deleteIfExists(f);
+                }
+            }
+        }
+    }
+
+    // File holding the snapshot for a key
+    Path snapshotFile(CIMUseCase useCase, String key) {
+        return directory.resolve(prefix(useCase) + key + EXTENSION);
+    }
+
+    private String prefix(CIMUseCase useCase) {
+        return useCase.name().toLowerCase() + "-" + source + "-";
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,74 @@
+package cim.loader;
+
+import com.github.jsonldjava.core.JsonLdConsts;
+import com.github.jsonldjava.core.JsonLdTripleCallback;
+import com.github.jsonldjava.core.RDFDataset;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.Quad;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Receives the RDF dataset produced by the JSON-LD processor and sends every triple straight to a Jena StreamRDF,
+ * so the graph never has to be serialised as JSON-LD text and parsed again by Jena.
+ * Triples in the default graph are sent as triples, triples in named graphs as quads.
+ */
+class StreamRDFCallback implements JsonLdTripleCallback {
+
+    private static final String XSD_STRING = XSDDatatype.XSDstring.getURI();
+
+    private final StreamRDF output;
+
+    // Blank node labels are only unique within one conversion, we map them to fresh Jena blank nodes
+    private final Map<String, Node> blankNodes = new HashMap<>();
+
+    StreamRDFCallback(StreamRDF output) {
+        this.output = output;
+    }
+
+    @Override
+    public Object call(RDFDataset dataset) {
+        for (String graphName : dataset.graphNames()) {
+            boolean defaultGraph = JsonLdConsts.DEFAULT.equals(graphName);
+            Node graph = defaultGraph ? null : toNode(graphName);
+            for (RDFDataset.Quad quad : dataset.getQuads(graphName)) {
+                Node s = toNode(quad.getSubject());
+                Node p = toNode(quad.getPredicate());
+                Node o = toNode(quad.getObject());
+                if (defaultGraph) {
+                    output.triple(Triple.create(s, p, o));
+                } else {
+                    output.quad(Quad.create(graph, s, p, o));
+                }
+            }
+        }
+        return null;
+    }
+
+    private Node toNode(RDFDataset.Node node) {
+        if (node.isLiteral()) {
+            String lang = node.getLanguage();
+            String datatype = node.getDatatype();
+            if (lang != null) {
+                return NodeFactory.createLiteral(node.getValue(), lang);
+            } else if (datatype == null || datatype.equals(XSD_STRING)) {
+                return NodeFactory.createLiteral(node.getValue());
+            } else {
+                return NodeFactory.createLiteral(node.getValue(), NodeFactory.getType(datatype));
+            }
+        }
+        return toNode(node.getValue());
+    }
+
+    private Node toNode(String iriOrLabel) {
+        if (iriOrLabel.startsWith("_:")) {
+            return blankNodes.computeIfAbsent(iriOrLabel, (label) -> NodeFactory.createBlankNode());
+        }
+        return NodeFactory.createURI(iriOrLabel);
+    }
+}
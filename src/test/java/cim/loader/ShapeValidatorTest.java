@@ -0,0 +1,97 @@
+package cim.loader;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ShapeValidatorTest {
+
+    // Accounts inherit the name of a party through sh:and, reference their owner and nest their address
+    private static final String SHAPES = String.join("\n",
+            "@prefix cim: <" + ShapeGraph.CIM + "> .",
+            "@prefix sh: <" + ShapeGraph.SH + "> .",
+            "@prefix xsd: <" + ShapeGraph.XSD + "> .",
+            "@prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#> .",
+            "cim:Party a rdfs:Class, sh:NodeShape ;",
+            "    sh:property [ sh:path cim:name ; sh:datatype xsd:string ; sh:minCount 1 ; sh:maxCount 1 ] .",
+            "cim:Address a rdfs:Class, sh:NodeShape ;",
+            "    sh:property [ sh:path cim:city ; sh:datatype xsd:string ; sh:minCount 1 ] .",
+            "cim:Account a rdfs:Class, sh:NodeShape ;",
+            "    sh:and ( cim:Party [ sh:property [ sh:path cim:owner ; sh:node cim:Party ; sh:maxCount 1 ] ] ) ;",
+            "    sh:property [ sh:path cim:address ; sh:node cim:Address ] .");
+
+    private static ShapeValidator validator;
+
+    @BeforeClass
+    public static void compile() {
+        Model model = ModelFactory.createDefaultModel();
+        model.read(new StringReader(SHAPES), null, "TTL");
+        validator = ShapeValidator.compile(model);
+    }
+
+    @Test
+    public void acceptsReferenceWithoutDatatype() {
+        Map<String, Object> account = account();
+        account.put("owner", Collections.singletonMap("@id", "c1"));
+        Assert.assertEquals(Collections.emptyList(), validator.validate(account, 0));
+    }
+
+    @Test
+    public void reportsMissingRequiredProperty() {
+        Map<String, Object> party = new LinkedHashMap<>();
+        party.put("@type", "Party");
+        List<ShapeViolation> violations = validator.validate(party, 3);
+        Assert.assertEquals(1, violations.size());
+        Assert.assertEquals(ShapeViolation.Constraint.MIN_COUNT, violations.get(0).getConstraint());
+        Assert.assertEquals("cim:name", violations.get(0).getPath());
+        Assert.assertEquals(3, violations.get(0).getRecord());
+    }
+
+    @Test
+    public void reportsMaxCount() {
+        Map<String, Object> account = account();
+        account.put("owner", Arrays.asList(Collections.singletonMap("@id", "c1"), Collections.singletonMap("@id", "c2")));
+        List<ShapeViolation> violations = validator.validate(account, 0);
+        Assert.assertEquals(1, violations.size());
+        Assert.assertEquals(ShapeViolation.Constraint.MAX_COUNT, violations.get(0).getConstraint());
+        Assert.assertEquals("cim:owner", violations.get(0).getPath());
+    }
+
+    @Test
+    public void checksPropertyInheritedThroughAnd() {
+        Map<String, Object> account = account();
+        account.remove("name");
+        List<ShapeViolation> violations = validator.validate(account, 0);
+        Assert.assertEquals(1, violations.size());
+        Assert.assertEquals(ShapeViolation.Constraint.MIN_COUNT, violations.get(0).getConstraint());
+        Assert.assertEquals("cim:name", violations.get(0).getPath());
+    }
+
+    @Test
+    public void checksNestedRecord() {
+        Map<String, Object> account = account();
+        account.put("address", Collections.singletonMap("zip", "08001"));
+        List<ShapeViolation> violations = validator.validate(account, 0);
+        Assert.assertEquals(1, violations.size());
+        Assert.assertEquals(ShapeViolation.Constraint.MIN_COUNT, violations.get(0).getConstraint());
+        Assert.assertEquals("cim:address/cim:city", violations.get(0).getPath());
+        Assert.assertEquals("a1", violations.get(0).getFocus());
+    }
+
+    private static Map<String, Object> account() {
+        Map<String, Object> account = new LinkedHashMap<>();
+        account.put("@id", "a1");
+        account.put("@type", "cim:Account");
+        account.put("name", "ACME");
+        return account;
+    }
+}